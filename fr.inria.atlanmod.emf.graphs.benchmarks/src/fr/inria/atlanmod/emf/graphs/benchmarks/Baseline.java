@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs.benchmarks;
+
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+
+import fr.inria.atlanmod.emf.graphs.Connectedness;
+
+/**
+ * Gives the benchmarks access to the original {@link EObject}-based
+ * implementations of {@link Connectedness}
+ *
+ * @author agomez
+ *
+ */
+class Baseline extends Connectedness {
+
+	static Set<EObject> reachableEObjects(EObject initialEObject) {
+		return getReachableEObjects(initialEObject);
+	}
+
+	static Set<EObject> resourceContents(Resource resource) {
+		return getResourceContents(resource);
+	}
+}
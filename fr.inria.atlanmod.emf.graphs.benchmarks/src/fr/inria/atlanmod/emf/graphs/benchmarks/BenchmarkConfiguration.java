@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs.benchmarks;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
+
+import fr.inria.atlanmod.instantiator.impl.DefaultGeneratorConfiguration;
+import fr.inria.atlanmod.instantiator.util.UniformLongDistribution;
+
+/**
+ * {@link DefaultGeneratorConfiguration} where the size of the model and the
+ * number of cross-references per object are independent. The default
+ * configuration infers both (and the depth of the containment tree) from the
+ * number of elements; instead, models generated with this configuration
+ * have a single root containing <code>size</code> elements (as in IFC
+ * files), and every many-valued cross-reference holds at most
+ * <code>fanOut</code> values
+ *
+ * @author agomez
+ *
+ */
+class BenchmarkConfiguration extends DefaultGeneratorConfiguration {
+
+	private final long size;
+	private final long fanOut;
+
+	BenchmarkConfiguration(Resource mmResource, long seed, String rootElement, long size, long fanOut) {
+		super(mmResource, seed);
+		this.size = size;
+		this.fanOut = fanOut;
+		setRootElement(rootElement);
+		setNumberOfElements(size);
+		setNumberOfProperties(fanOut);
+	}
+
+	@Override
+	public UniformLongDistribution getRootDistributionFor(EClass rootEClass) {
+		return new FixedDistribution(1);
+	}
+
+	@Override
+	public UniformLongDistribution getDepthDistributionFor(EClass eClass) {
+		return new FixedDistribution(1);
+	}
+
+	@Override
+	public UniformLongDistribution getDistributionFor(EReference eReference) {
+		if (eReference.isContainment()) {
+			return new FixedDistribution(size);
+		}
+		UniformLongDistribution x = new UniformLongDistribution(eReference.getLowerBound(), Math.max(eReference.getLowerBound() + 1, fanOut));
+		x.reseedRandomGenerator(random.nextLong());
+		return x;
+	}
+
+	/**
+	 * Distribution that always samples the same value
+	 */
+	private static class FixedDistribution extends UniformLongDistribution {
+
+		private final long value;
+
+		private FixedDistribution(long value) {
+			super(value, value + 1);
+			this.value = value;
+		}
+
+		@Override
+		public long sample() {
+			return value;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs.benchmarks;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.ecore.EObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.inria.atlanmod.emf.graphs.ModelGraph;
+
+/**
+ * Indexing of the contents of a resource: the {@link Set} of
+ * {@link EObject}s used originally, and the {@link ModelGraph}
+ *
+ * @author agomez
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class IndexingBenchmark {
+
+	@Benchmark
+	public Set<EObject> resourceContents(ModelState state) {
+		return Baseline.resourceContents(state.resource);
+	}
+
+	@Benchmark
+	public ModelGraph modelGraph(ModelState state) {
+		return ModelGraph.build(state.resource);
+	}
+}
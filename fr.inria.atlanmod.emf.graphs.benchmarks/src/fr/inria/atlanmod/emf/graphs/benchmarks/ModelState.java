@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.xmi.impl.EcoreResourceFactoryImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import fr.inria.atlanmod.emf.graphs.ModelGraph;
+import fr.inria.atlanmod.emf.graphs.Reachability;
+import fr.inria.atlanmod.instantiator.SpecimenGenerator;
+
+/**
+ * Benchmark state holding a model generated with the
+ * {@link SpecimenGenerator}, its {@link ModelGraph}, and the traversal
+ * root. Models are generated once per trial, with a fixed seed and a
+ * {@link BenchmarkConfiguration}, from the metamodels of the
+ * <code>models</code> directory (which can be changed
+ * with the <code>benchmarks.models</code> system property):
+ * <ul>
+ * <li><code>graph</code>: a generic metamodel of nodes with arbitrary
+ * edges</li>
+ * <li><code>ifc</code>: a subset of IFC2X3, where all the elements are
+ * contained in a flat list and connected by relationship objects</li>
+ * </ul>
+ *
+ * @author agomez
+ *
+ */
+@State(Scope.Benchmark)
+public class ModelState {
+
+	private static final long SEED = 20150101L;
+
+	/**
+	 * Number of elements considered as traversal root
+	 */
+	private static final int ROOT_CANDIDATES = 100;
+
+	/**
+	 * The metamodel of the generated model
+	 */
+	@Param({ "graph", "ifc" })
+	public String shape;
+
+	/**
+	 * The number of elements contained in the root of the generated model
+	 */
+	@Param({ "1000", "10000", "100000" })
+	public long size;
+
+	/**
+	 * The maximum number of values of every many-valued cross-reference
+	 */
+	@Param({ "2", "5" })
+	public long fanOut;
+
+	Resource resource;
+	ModelGraph graph;
+	EObject rootEObject;
+	int rootNode;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		File models = new File(System.getProperty("benchmarks.models", "models"));
+		ResourceSet resourceSet = new ResourceSetImpl();
+		Resource mmResource = new EcoreResourceFactoryImpl().createResource(URI.createFileURI(new File(models, shape + ".ecore").getAbsolutePath()));
+		resourceSet.getResources().add(mmResource);
+		mmResource.load(null);
+		for (EObject eObject : mmResource.getContents()) {
+			EPackage ePackage = (EPackage) eObject;
+			EPackage.Registry.INSTANCE.put(ePackage.getNsURI(), ePackage);
+		}
+
+		BenchmarkConfiguration configuration = new BenchmarkConfiguration(mmResource, SEED, shape.equals("ifc") ? "IfcModel" : "Graph", size, fanOut);
+		List<EObject> eObjects = new SpecimenGenerator(configuration).generate(resourceSet);
+
+		resource = new XMIResourceImpl(URI.createFileURI(new File(shape + "-" + size + "-" + fanOut + ".xmi").getAbsolutePath()));
+		resourceSet.getResources().add(resource);
+		resource.getContents().addAll(eObjects);
+
+		graph = ModelGraph.build(resource);
+		// Use the contained element reaching the most nodes, among the
+		// first ones, as traversal root; the root of the model reaches
+		// every node through the containment references
+		rootNode = 1;
+		int best = 0;
+		for (int node = 1; node < Math.min(graph.resourceSize(), ROOT_CANDIDATES + 1); node++) {
+			int reachable = Reachability.getReachableNodes(graph, node).cardinality();
+			if (reachable > best) {
+				rootNode = node;
+				best = reachable;
+			}
+		}
+		rootEObject = graph.getEObject(rootNode);
+	}
+}
@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs.benchmarks;
+
+import java.util.BitSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.ecore.EObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.inria.atlanmod.emf.graphs.Reachability;
+
+/**
+ * Reachability from a single root, on {@link EObject}s and on the
+ * {@link fr.inria.atlanmod.emf.graphs.ModelGraph}
+ *
+ * @author agomez
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ReachabilityBenchmark {
+
+	@Benchmark
+	public Set<EObject> reachableEObjects(ModelState state) {
+		return Baseline.reachableEObjects(state.rootEObject);
+	}
+
+	@Benchmark
+	public BitSet reachableNodes(ModelState state) {
+		return Reachability.getReachableNodes(state.graph, state.rootNode);
+	}
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs.benchmarks;
+
+import java.util.BitSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.ecore.EObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.inria.atlanmod.emf.graphs.Reachability;
+
+/**
+ * Computation of the objects of a resource that are not reachable from the
+ * root: the original set difference over {@link EObject}s, and the
+ * complement of the reachable nodes. Both benchmarks include the traversal
+ * from the root, so that they measure the same work
+ *
+ * @author agomez
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class UnreachableBenchmark {
+
+	@Benchmark
+	public Set<EObject> unreachableEObjects(ModelState state) {
+		Set<EObject> unreachable = Baseline.resourceContents(state.resource);
+		unreachable.removeAll(Baseline.reachableEObjects(state.rootEObject));
+		return unreachable;
+	}
+
+	@Benchmark
+	public BitSet unreachableNodes(ModelState state) {
+		return Reachability.getUnreachableNodes(state.graph, Reachability.getReachableNodes(state.graph, state.rootNode));
+	}
+}
@@ -0,0 +1,321 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Estimates the number of nodes reachable from a set of roots with
+ * HyperLogLog sketches (Flajolet et al., "HyperLogLog: the analysis of a
+ * near-optimal cardinality estimation algorithm"), propagated along the
+ * graph as in HyperANF (Boldi et al.).
+ * <p>
+ * Since all the nodes of a strongly connected component reach the same
+ * nodes, sketches are kept per component of the condensed graph, and
+ * computed in a single pass in reverse topological order (the order of
+ * {@link Components#strong(ModelGraph)}): the sketch of a component is the
+ * union of the hashes of its nodes and of the sketches of its successors.
+ * Sketches are released as soon as all the components that point to them
+ * are computed, and only the nodes reachable from some root are visited.
+ * Sketches with few non-empty registers (e.g., those of the leaves of the
+ * graph) are kept in sparse form, as the list of their non-empty registers
+ * and ranks, so that wide fan-ins do not keep a full sketch alive per
+ * pointed component; full sketches are only built for components that
+ * reach many nodes.
+ * The traversal thus takes time proportional to the size of the graph
+ * (times the number of registers, when sketches are merged) for all the
+ * roots together, instead of one traversal per root
+ *
+ * @author agomez
+ *
+ */
+public class ApproximateReachability {
+
+	private static final int MIN_PRECISION = 4;
+	private static final int MAX_PRECISION = 16;
+
+	private final int precision;
+	private final int registers;
+	/**
+	 * Maximum number of non-empty registers of a sparse sketch, whose
+	 * entries take four bytes each
+	 */
+	private final int sparseLimit;
+
+	/**
+	 * Creates sketches with the smallest number of registers whose
+	 * standard error (<code>1.04 / sqrt(registers)</code>) does not exceed
+	 * <code>relativeError</code>; between 2<sup>4</sup> and 2<sup>16</sup>
+	 * registers of one byte are used
+	 *
+	 * @param relativeError
+	 *            The target standard error of the estimates (e.g.
+	 *            <code>0.05</code>)
+	 */
+	public ApproximateReachability(double relativeError) {
+		if (!(relativeError > 0)) {
+			throw new IllegalArgumentException("Relative error must be positive");
+		}
+		int precision = MIN_PRECISION;
+		while (precision < MAX_PRECISION && 1.04 / Math.sqrt(1 << precision) > relativeError) {
+			precision++;
+		}
+		this.precision = precision;
+		this.registers = 1 << precision;
+		this.sparseLimit = registers / 8;
+	}
+
+	/**
+	 * @return The number of registers of every sketch
+	 */
+	public int getRegisterCount() {
+		return registers;
+	}
+
+	/**
+	 * @return The standard error of the estimates
+	 */
+	public double getRelativeError() {
+		return 1.04 / Math.sqrt(registers);
+	}
+
+	/**
+	 * Estimates the number of nodes reachable from every root, computing
+	 * the strongly connected components of <code>graph</code> first
+	 *
+	 * @see #estimate(ModelGraph, Components, int[])
+	 */
+	public double[] estimate(ModelGraph graph, int[] roots) {
+		return estimate(graph, Components.strong(graph), roots);
+	}
+
+	/**
+	 * Estimates the number of nodes reachable from every root (including
+	 * the root itself)
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param strong
+	 *            The strongly connected {@link Components} of
+	 *            <code>graph</code>
+	 * @param roots
+	 *            The initial nodes
+	 * @return The estimated number of reachable nodes of every root, in the
+	 *         same order as <code>roots</code>
+	 */
+	public double[] estimate(ModelGraph graph, Components strong, int[] roots) {
+		double[] estimates = new double[roots.length];
+		if (roots.length == 0) {
+			return estimates;
+		}
+		BitSet reachable = getReachableNodes(graph, roots);
+
+		// Group the reachable nodes by component (counting sort), and count
+		// the edges pointing to every component from other components
+		int count = strong.count();
+		int[] offsets = new int[count + 1];
+		int[] pending = new int[count];
+		for (int node = reachable.nextSetBit(0); node >= 0; node = reachable.nextSetBit(node + 1)) {
+			int component = strong.componentOf(node);
+			offsets[component + 1]++;
+			for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+				int target = strong.componentOf(graph.target(edge));
+				if (target != component) {
+					pending[target]++;
+				}
+			}
+		}
+		for (int component = 0; component < count; component++) {
+			offsets[component + 1] += offsets[component];
+		}
+		int[] members = new int[offsets[count]];
+		int[] next = Arrays.copyOf(offsets, count);
+		for (int node = reachable.nextSetBit(0); node >= 0; node = reachable.nextSetBit(node + 1)) {
+			members[next[strong.componentOf(node)]++] = node;
+		}
+		next = null;
+
+		// Roots sorted by component, packed with their position in roots
+		long[] rootOrder = new long[roots.length];
+		for (int i = 0; i < roots.length; i++) {
+			rootOrder[i] = (long) strong.componentOf(roots[i]) << 32 | i;
+		}
+		Arrays.sort(rootOrder);
+		int nextRoot = 0;
+
+		// Sketches of the components, either sparse (int[] of register and
+		// rank pairs) or full (byte[] of ranks). The sketch of the current
+		// component is built in a full scratch sketch, whose non-empty
+		// registers are tracked so that it can be cleared cheaply
+		Object[] sketches = new Object[count];
+		byte[] scratch = new byte[registers];
+		IntList nonEmpty = new IntList();
+		for (int component = 0; component < count && nextRoot < rootOrder.length; component++) {
+			if (offsets[component] == offsets[component + 1]) {
+				continue;
+			}
+			for (int i = offsets[component]; i < offsets[component + 1]; i++) {
+				int node = members[i];
+				add(scratch, nonEmpty, node);
+				for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+					int target = strong.componentOf(graph.target(edge));
+					if (target != component) {
+						merge(scratch, nonEmpty, sketches[target]);
+						if (--pending[target] == 0) {
+							sketches[target] = null;
+						}
+					}
+				}
+			}
+			if (pending[component] > 0) {
+				sketches[component] = toSketch(scratch, nonEmpty);
+			}
+			if ((int) (rootOrder[nextRoot] >>> 32) == component) {
+				double estimate = estimate(scratch);
+				while (nextRoot < rootOrder.length && (int) (rootOrder[nextRoot] >>> 32) == component) {
+					estimates[(int) rootOrder[nextRoot++]] = estimate;
+				}
+			}
+			if (nonEmpty.size() > sparseLimit) {
+				Arrays.fill(scratch, (byte) 0);
+			} else {
+				for (int i = 0; i < nonEmpty.size(); i++) {
+					scratch[nonEmpty.get(i)] = 0;
+				}
+			}
+			nonEmpty.clear();
+		}
+		return estimates;
+	}
+
+	/**
+	 * Returns the nodes reachable from any of <code>roots</code>
+	 */
+	private static BitSet getReachableNodes(ModelGraph graph, int[] roots) {
+		BitSet visited = new BitSet(graph.size());
+		IntList queue = new IntList();
+		for (int root : roots) {
+			if (!visited.get(root)) {
+				visited.set(root);
+				queue.add(root);
+			}
+		}
+		for (int head = 0; head < queue.size(); head++) {
+			int node = queue.get(head);
+			for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+				int target = graph.target(edge);
+				if (!visited.get(target)) {
+					visited.set(target);
+					queue.add(target);
+				}
+			}
+		}
+		return visited;
+	}
+
+	private void add(byte[] sketch, IntList nonEmpty, int node) {
+		long hash = hash(node);
+		int register = (int) (hash >>> (Long.SIZE - precision));
+		// Rank of the first set bit of the remaining bits, bounded by their
+		// number
+		byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+		update(sketch, nonEmpty, register, rank);
+	}
+
+	/**
+	 * Merges <code>other</code>, either a sparse or a full sketch, into the
+	 * full <code>sketch</code>
+	 */
+	private static void merge(byte[] sketch, IntList nonEmpty, Object other) {
+		if (other instanceof int[]) {
+			for (int entry : (int[]) other) {
+				update(sketch, nonEmpty, entry >>> Byte.SIZE, (byte) entry);
+			}
+		} else {
+			byte[] ranks = (byte[]) other;
+			for (int register = 0; register < sketch.length; register++) {
+				update(sketch, nonEmpty, register, ranks[register]);
+			}
+		}
+	}
+
+	private static void update(byte[] sketch, IntList nonEmpty, int register, byte rank) {
+		if (rank > sketch[register]) {
+			if (sketch[register] == 0) {
+				nonEmpty.add(register);
+			}
+			sketch[register] = rank;
+		}
+	}
+
+	/**
+	 * Returns a copy of the full <code>sketch</code>, in sparse form if it
+	 * has few non-empty registers
+	 */
+	private Object toSketch(byte[] sketch, IntList nonEmpty) {
+		if (nonEmpty.size() > sparseLimit) {
+			return Arrays.copyOf(sketch, registers);
+		}
+		int[] entries = new int[nonEmpty.size()];
+		for (int i = 0; i < entries.length; i++) {
+			int register = nonEmpty.get(i);
+			entries[i] = register << Byte.SIZE | sketch[register];
+		}
+		return entries;
+	}
+
+	private double estimate(byte[] sketch) {
+		double sum = 0;
+		int zeros = 0;
+		for (byte rank : sketch) {
+			sum += 1.0 / (1L << rank);
+			if (rank == 0) {
+				zeros++;
+			}
+		}
+		double alpha;
+		switch (registers) {
+		case 16:
+			alpha = 0.673;
+			break;
+		case 32:
+			alpha = 0.697;
+			break;
+		case 64:
+			alpha = 0.709;
+			break;
+		default:
+			alpha = 0.7213 / (1 + 1.079 / registers);
+		}
+		double estimate = alpha * registers * registers / sum;
+		if (estimate <= 2.5 * registers && zeros > 0) {
+			// Small range correction: linear counting
+			estimate = registers * Math.log((double) registers / zeros);
+		}
+		return estimate;
+	}
+
+	/**
+	 * 64-bit finalizer of MurmurHash3, applied to the node scaled by the
+	 * golden ratio (so that node <code>0</code> does not hash to
+	 * <code>0</code>)
+	 */
+	private static long hash(int node) {
+		long hash = (node + 1L) * 0x9e3779b97f4a7c15L;
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,363 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EPackage;
+
+/**
+ * Analysis of a set of model files in a single JVM. The metamodel is
+ * loaded (and registered) only once by the caller, and the files are
+ * analyzed concurrently on a bounded pool of worker threads. Before loading
+ * a file, a worker must reserve its estimated heap footprint from a budget
+ * computed from the maximum heap size; files whose footprint exceeds the
+ * budget reserve all of it, so two huge files are never loaded at once.
+ * Since the footprint is only an estimate, running out of heap while
+ * analyzing a file is reported as a failure of that file, as any other
+ * error, and the analysis of the remaining files goes on
+ *
+ * @author agomez
+ *
+ */
+public class BatchAnalysis {
+
+	private static final Logger LOG = Logger.getLogger(BatchAnalysis.class.getName());
+
+	/**
+	 * Default extension of the analyzed files when a directory is given
+	 */
+	private static final String XMI_EXTENSION = ".xmi";
+
+	/**
+	 * Estimated ratio between the heap footprint of a model and the size of
+	 * its file, when it is loaded as a {@link org.eclipse.emf.ecore.resource.Resource}
+	 */
+	private static final int LOADED_EXPANSION = 10;
+
+	/**
+	 * Estimated ratio between the heap footprint of a model and the size of
+	 * its file, when its graph is extracted by streaming it
+	 */
+	private static final int STREAMED_EXPANSION = 2;
+
+	/**
+	 * Fraction of the free heap that can be reserved by the workers
+	 */
+	private static final double HEAP_FRACTION = 0.8;
+
+	/**
+	 * Heap is reserved in units of 1 MB
+	 */
+	private static final int UNIT = 1024 * 1024;
+
+	private final String nsURI;
+	private final boolean streaming;
+	private final GraphCache cache;
+	private final ReferenceFilter filter;
+	private final List<EClass> candidateEClasses;
+	private final int threads;
+	private final PhaseMetrics metrics;
+	private final int budget;
+	private final Semaphore heap;
+
+	/**
+	 * Creates a new batch analysis
+	 *
+	 * @param nsURI
+	 *            The <code>nsURI</code> of the (already registered) metamodel
+	 * @param streaming
+	 *            Whether the graphs must be extracted by streaming the files
+	 * @param cache
+	 *            The {@link GraphCache}, or <code>null</code>
+	 * @param filter
+	 *            The {@link ReferenceFilter} of the followed references, or
+	 *            <code>null</code> to follow all of them
+	 * @param candidateEClasses
+	 *            The {@link EClass}es of the objects from which
+	 *            reachability is computed
+	 * @param threads
+	 *            The maximum number of files analyzed concurrently
+	 * @param metrics
+	 *            The {@link PhaseMetrics} where the phases of every file are
+	 *            recorded
+	 */
+	public BatchAnalysis(String nsURI, boolean streaming, GraphCache cache, ReferenceFilter filter, List<EClass> candidateEClasses, int threads, PhaseMetrics metrics) {
+		this.nsURI = nsURI;
+		this.streaming = streaming;
+		this.cache = cache;
+		this.filter = filter;
+		this.candidateEClasses = candidateEClasses;
+		this.threads = threads;
+		this.metrics = metrics;
+		Runtime runtime = Runtime.getRuntime();
+		long free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+		this.budget = (int) Math.max(1, free * HEAP_FRACTION / UNIT);
+		this.heap = new Semaphore(budget, true);
+	}
+
+	/**
+	 * Returns the files denoted by <code>pattern</code>: all the XMI files
+	 * under it (recursively) if it is a directory, or the files matching it
+	 * if it is a glob pattern (e.g. <code>files/**&#47;*.xmi</code>)
+	 *
+	 * @param pattern
+	 *            A directory or a glob pattern
+	 * @return The matching files, sorted by path
+	 * @throws IOException
+	 *             If the file tree can not be walked
+	 */
+	public static List<File> findFiles(String pattern) throws IOException {
+		final List<File> files = new ArrayList<>();
+		Path root;
+		final PathMatcher matcher;
+		if (new File(pattern).isDirectory()) {
+			root = Paths.get(pattern);
+			matcher = null;
+		} else {
+			// Walk the longest prefix of the pattern without wildcards
+			String normalized = pattern.replace(File.separatorChar, '/');
+			int wildcard = normalized.length();
+			for (char c : new char[] { '*', '?', '[', '{' }) {
+				int index = normalized.indexOf(c);
+				if (index != -1 && index < wildcard) {
+					wildcard = index;
+				}
+			}
+			int separator = normalized.lastIndexOf('/', wildcard);
+			root = Paths.get(separator == -1 ? "." : separator == 0 ? "/" : normalized.substring(0, separator));
+			matcher = FileSystems.getDefault().getPathMatcher("glob:" + (separator == -1 ? normalized : normalized.substring(separator + 1)));
+		}
+		final Path base = root;
+		if (Files.isDirectory(base)) {
+			Files.walkFileTree(base, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					if (matcher != null ? matcher.matches(base.relativize(file)) : file.toString().endsWith(XMI_EXTENSION)) {
+						files.add(file.toFile());
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+		Collections.sort(files);
+		return files;
+	}
+
+	/**
+	 * Analyzes <code>files</code>. Failures are recorded in the
+	 * corresponding {@link Result} and do not stop the analysis of the
+	 * remaining files
+	 *
+	 * @param files
+	 *            The model files
+	 * @return The {@link Result}s, in the same order as <code>files</code>
+	 * @throws InterruptedException
+	 *             If the analysis is interrupted
+	 */
+	public List<Result> analyze(List<File> files) throws InterruptedException {
+		initializeEPackages();
+		// Large files are submitted first, so that they do not end up
+		// delaying the completion of the whole batch
+		List<File> submissionOrder = new ArrayList<>(files);
+		Collections.sort(submissionOrder, new Comparator<File>() {
+			@Override
+			public int compare(File f1, File f2) {
+				return Long.compare(f2.length(), f1.length());
+			}
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Result>> futures = new ArrayList<>();
+			for (File file : submissionOrder) {
+				futures.add(executor.submit(new AnalysisTask(file)));
+			}
+			List<Result> results = new ArrayList<>();
+			for (Future<Result> future : futures) {
+				try {
+					results.add(future.get());
+				} catch (ExecutionException e) {
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+			Collections.sort(results, new Comparator<Result>() {
+				@Override
+				public int compare(Result r1, Result r2) {
+					return r1.getFile().compareTo(r2.getFile());
+				}
+			});
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns the heap (in units of {@link #UNIT}) to be reserved for
+	 * <code>file</code>, which never exceeds the whole budget
+	 */
+	private int estimateFootprint(File file) {
+		long bytes = file.length() * (streaming ? STREAMED_EXPANSION : LOADED_EXPANSION);
+		return (int) Math.max(1, Math.min(budget, bytes / UNIT));
+	}
+
+	/**
+	 * Forces the lazy initialization of the registered {@link EClass}es
+	 * (their structural features, supertypes, etc.) before the models are
+	 * loaded concurrently, since it is not thread-safe
+	 */
+	private static void initializeEPackages() {
+		for (Object value : new ArrayList<>(EPackage.Registry.INSTANCE.values())) {
+			if (value instanceof EPackage) {
+				for (EClassifier eClassifier : ((EPackage) value).getEClassifiers()) {
+					if (eClassifier instanceof EClass) {
+						EClass eClass = (EClass) eClassifier;
+						eClass.getEAllSuperTypes();
+						eClass.getEAllStructuralFeatures();
+						eClass.getEAllContainments();
+						eClass.getEAllReferences();
+						eClass.getEAllAttributes();
+						eClass.getEIDAttribute();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Analysis of a single file, run by a worker thread once the estimated
+	 * footprint of the file has been reserved
+	 */
+	private class AnalysisTask implements Callable<Result> {
+
+		private final File file;
+
+		private AnalysisTask(File file) {
+			this.file = file;
+		}
+
+		@Override
+		public Result call() throws InterruptedException {
+			int footprint = estimateFootprint(file);
+			heap.acquire(footprint);
+			try {
+				long start = System.currentTimeMillis();
+				ModelGraph graph = Connectedness.loadGraph(file, nsURI, streaming, false, cache, filter, metrics);
+				PhaseMetrics.Phase phase = metrics.start("traversal", file.getPath());
+				int[] roots = Connectedness.findCandidateNodes(graph, candidateEClasses);
+				int[] counts = Reachability.countReachableNodes(graph, roots);
+				phase.end();
+				URI[] rootURIs = new URI[roots.length];
+				String[] rootEClassNames = new String[roots.length];
+				for (int i = 0; i < roots.length; i++) {
+					rootURIs[i] = graph.getURI(roots[i]);
+					rootEClassNames[i] = graph.getEClass(roots[i]).getName();
+				}
+				return new Result(file, graph.resourceSize(), rootURIs, rootEClassNames, counts, System.currentTimeMillis() - start, null);
+			} catch (Exception e) {
+				LOG.log(Level.SEVERE, MessageFormat.format("Unable to analyze {0}", file), e);
+				return new Result(file, 0, new URI[0], new String[0], new int[0], 0, e);
+			} catch (OutOfMemoryError e) {
+				// The model of the file is no longer referenced once the
+				// try block is left, so the other workers can reclaim it
+				LOG.log(Level.SEVERE, MessageFormat.format("Not enough heap to analyze {0} (estimated footprint: {1} MB)", file, footprint));
+				return new Result(file, 0, new URI[0], new String[0], new int[0], 0, e);
+			} finally {
+				heap.release(footprint);
+			}
+		}
+	}
+
+	/**
+	 * Outcome of the analysis of a single file
+	 */
+	public static class Result {
+
+		private final File file;
+		private final int elementCount;
+		private final URI[] rootURIs;
+		private final String[] rootEClassNames;
+		private final int[] reachableCounts;
+		private final long millis;
+		private final Throwable error;
+
+		private Result(File file, int elementCount, URI[] rootURIs, String[] rootEClassNames, int[] reachableCounts, long millis, Throwable error) {
+			this.file = file;
+			this.elementCount = elementCount;
+			this.rootURIs = rootURIs;
+			this.rootEClassNames = rootEClassNames;
+			this.reachableCounts = reachableCounts;
+			this.millis = millis;
+			this.error = error;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public int getElementCount() {
+			return elementCount;
+		}
+
+		public int getRootCount() {
+			return rootURIs.length;
+		}
+
+		public URI getRootURI(int i) {
+			return rootURIs[i];
+		}
+
+		public String getRootEClassName(int i) {
+			return rootEClassNames[i];
+		}
+
+		public int getReachableCount(int i) {
+			return reachableCounts[i];
+		}
+
+		public long getMillis() {
+			return millis;
+		}
+
+		/**
+		 * @return The error that prevented the analysis of the file, or
+		 *         <code>null</code> if it was analyzed successfully
+		 */
+		public Throwable getError() {
+			return error;
+		}
+	}
+}
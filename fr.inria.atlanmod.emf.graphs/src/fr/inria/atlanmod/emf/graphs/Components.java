@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Partition of the nodes of a {@link ModelGraph} in connected components.
+ * Both weakly connected components (union-find) and strongly connected
+ * components (Tarjan's algorithm) are computed in near-linear time and
+ * without recursion, using <code>int</code> arrays only
+ *
+ * @author agomez
+ *
+ */
+public class Components {
+
+	private final int[] componentOf;
+	private final int[] sizes;
+
+	private Components(int[] componentOf, int count) {
+		this.componentOf = componentOf;
+		this.sizes = new int[count];
+		for (int component : componentOf) {
+			sizes[component]++;
+		}
+	}
+
+	/**
+	 * Computes the weakly connected components of <code>graph</code>, i.e.,
+	 * the components obtained when edges are followed in both directions.
+	 * Components are numbered in order of their first node
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @return The weakly connected {@link Components}
+	 */
+	public static Components weak(ModelGraph graph) {
+		int size = graph.size();
+		int[] parent = new int[size];
+		int[] rank = new int[size];
+		for (int node = 0; node < size; node++) {
+			parent[node] = node;
+		}
+		for (int node = 0; node < size; node++) {
+			for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+				int a = find(parent, node);
+				int b = find(parent, graph.target(edge));
+				if (a != b) {
+					// Union by rank
+					if (rank[a] < rank[b]) {
+						parent[a] = b;
+					} else if (rank[a] > rank[b]) {
+						parent[b] = a;
+					} else {
+						parent[b] = a;
+						rank[a]++;
+					}
+				}
+			}
+		}
+		// Renumber the representatives densely, reusing the rank array
+		int[] componentOf = rank;
+		int[] number = new int[size];
+		Arrays.fill(number, -1);
+		int count = 0;
+		for (int node = 0; node < size; node++) {
+			int representative = find(parent, node);
+			if (number[representative] == -1) {
+				number[representative] = count++;
+			}
+			componentOf[node] = number[representative];
+		}
+		return new Components(componentOf, count);
+	}
+
+	/**
+	 * Computes the strongly connected components of <code>graph</code> using
+	 * an iterative version of Tarjan's algorithm. Components are numbered in
+	 * the order in which Tarjan's algorithm completes them, which is a
+	 * reverse topological order of the condensed graph: if there is an edge
+	 * from component <code>a</code> to a different component <code>b</code>
+	 * then <code>b &lt; a</code>
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @return The strongly connected {@link Components}
+	 */
+	public static Components strong(ModelGraph graph) {
+		int size = graph.size();
+		int[] index = new int[size];
+		int[] lowLink = new int[size];
+		int[] componentOf = new int[size];
+		Arrays.fill(index, -1);
+		BitSet onStack = new BitSet(size);
+		int[] stack = new int[size];
+		int stackSize = 0;
+		// Explicit call stack: the node of each frame and its next edge
+		int[] frameNode = new int[size];
+		int[] frameEdge = new int[size];
+		int frames = 0;
+		int counter = 0;
+		int count = 0;
+
+		for (int start = 0; start < size; start++) {
+			if (index[start] != -1) {
+				continue;
+			}
+			index[start] = lowLink[start] = counter++;
+			stack[stackSize++] = start;
+			onStack.set(start);
+			frameNode[frames] = start;
+			frameEdge[frames++] = graph.edgeStart(start);
+			while (frames > 0) {
+				int node = frameNode[frames - 1];
+				int edge = frameEdge[frames - 1];
+				if (edge < graph.edgeEnd(node)) {
+					frameEdge[frames - 1]++;
+					int target = graph.target(edge);
+					if (index[target] == -1) {
+						index[target] = lowLink[target] = counter++;
+						stack[stackSize++] = target;
+						onStack.set(target);
+						frameNode[frames] = target;
+						frameEdge[frames++] = graph.edgeStart(target);
+					} else if (onStack.get(target)) {
+						lowLink[node] = Math.min(lowLink[node], index[target]);
+					}
+				} else {
+					if (lowLink[node] == index[node]) {
+						int member;
+						do {
+							member = stack[--stackSize];
+							onStack.clear(member);
+							componentOf[member] = count;
+						} while (member != node);
+						count++;
+					}
+					frames--;
+					if (frames > 0) {
+						int caller = frameNode[frames - 1];
+						lowLink[caller] = Math.min(lowLink[caller], lowLink[node]);
+					}
+				}
+			}
+		}
+		return new Components(componentOf, count);
+	}
+
+	/**
+	 * @return The number of components
+	 */
+	public int count() {
+		return sizes.length;
+	}
+
+	/**
+	 * @return The component of <code>node</code>
+	 */
+	public int componentOf(int node) {
+		return componentOf[node];
+	}
+
+	/**
+	 * @return The number of nodes of <code>component</code>
+	 */
+	public int size(int component) {
+		return sizes[component];
+	}
+
+	/**
+	 * @return The component with the largest number of nodes, or
+	 *         <code>-1</code> if there are no components
+	 */
+	public int largest() {
+		int largest = -1;
+		for (int component = 0; component < sizes.length; component++) {
+			if (largest == -1 || sizes[component] > sizes[largest]) {
+				largest = component;
+			}
+		}
+		return largest;
+	}
+
+	/**
+	 * @return The nodes of <code>component</code>
+	 */
+	public BitSet members(int component) {
+		BitSet members = new BitSet(componentOf.length);
+		for (int node = 0; node < componentOf.length; node++) {
+			if (componentOf[node] == component) {
+				members.set(node);
+			}
+		}
+		return members;
+	}
+
+	/**
+	 * Returns the component size histogram, i.e., a map whose keys are
+	 * component sizes and whose values are the number of components of
+	 * that size
+	 *
+	 * @return The size histogram, sorted by size
+	 */
+	public SortedMap<Integer, Integer> sizeHistogram() {
+		int[] sorted = sizes.clone();
+		Arrays.sort(sorted);
+		SortedMap<Integer, Integer> histogram = new TreeMap<>();
+		for (int i = 0; i < sorted.length;) {
+			int j = i;
+			while (j < sorted.length && sorted[j] == sorted[i]) {
+				j++;
+			}
+			histogram.put(sorted[i], j - i);
+			i = j;
+		}
+		return histogram;
+	}
+
+	/**
+	 * Returns the representative of the set of <code>node</code>, halving
+	 * the path on the way
+	 */
+	private static int find(int[] parent, int node) {
+		while (parent[node] != node) {
+			parent[node] = parent[parent[node]];
+			node = parent[node];
+		}
+		return node;
+	}
+}
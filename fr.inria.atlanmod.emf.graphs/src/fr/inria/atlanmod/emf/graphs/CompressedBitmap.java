@@ -0,0 +1,514 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Compressed set of non-negative <code>int</code>s (typically, nodes of a
+ * {@link ModelGraph}), following the layout of Roaring bitmaps (Chambi et
+ * al., "Better bitmap performance with Roaring bitmaps"): values are
+ * grouped by their 16 most significant bits, and the 16 least significant
+ * bits of every group are kept in a container that is either a sorted
+ * array (up to {@link #ARRAY_LIMIT} values) or a bitmap of 2<sup>16</sup>
+ * bits. Sparse sets thus take two bytes per value, and dense sets one bit
+ * per possible value.
+ * <p>
+ * Set operations work container by container, and never decompress the
+ * whole set. Bitmaps are immutable, so that the results of the operations
+ * can share containers with their operands
+ *
+ * @author agomez
+ *
+ */
+public class CompressedBitmap {
+
+	/**
+	 * Maximum number of values of an array container; above it, a bitmap
+	 * container (8 KB) is smaller
+	 */
+	static final int ARRAY_LIMIT = 4096;
+
+	private static final int WORDS = 1 << 10;
+
+	private final char[] keys;
+	private final Container[] containers;
+	private int size;
+
+	private CompressedBitmap(char[] keys, Container[] containers, int size) {
+		this.keys = keys;
+		this.containers = containers;
+		this.size = size;
+	}
+
+	/**
+	 * Returns a bitmap containing the set bits of <code>bitSet</code>
+	 */
+	public static CompressedBitmap valueOf(BitSet bitSet) {
+		long[] words = bitSet.toLongArray();
+		int blocks = (words.length + WORDS - 1) / WORDS;
+		CompressedBitmap result = new CompressedBitmap(new char[blocks], new Container[blocks], 0);
+		for (int block = 0; block < blocks; block++) {
+			int from = block * WORDS;
+			int to = Math.min(words.length, from + WORDS);
+			int cardinality = 0;
+			for (int i = from; i < to; i++) {
+				cardinality += Long.bitCount(words[i]);
+			}
+			if (cardinality == 0) {
+				continue;
+			}
+			Container container;
+			if (cardinality > ARRAY_LIMIT) {
+				container = new BitmapContainer(Arrays.copyOf(Arrays.copyOfRange(words, from, to), WORDS), cardinality);
+			} else {
+				char[] values = new char[cardinality];
+				int count = 0;
+				for (int i = from; i < to; i++) {
+					for (long word = words[i]; word != 0; word &= word - 1) {
+						values[count++] = (char) (((i - from) << 6) + Long.numberOfTrailingZeros(word));
+					}
+				}
+				container = new ArrayContainer(values, cardinality);
+			}
+			result.append((char) block, container);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns whether <code>value</code> belongs to this bitmap
+	 */
+	public boolean contains(int value) {
+		int index = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+		return index >= 0 && containers[index].contains((char) value);
+	}
+
+	/**
+	 * @return The number of values of this bitmap
+	 */
+	public int cardinality() {
+		int cardinality = 0;
+		for (int i = 0; i < size; i++) {
+			cardinality += containers[i].cardinality();
+		}
+		return cardinality;
+	}
+
+	/**
+	 * @return Whether this bitmap has no values
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return The approximate number of bytes taken by the containers of
+	 *         this bitmap
+	 */
+	public long sizeInBytes() {
+		long bytes = size * 2L;
+		for (int i = 0; i < size; i++) {
+			bytes += containers[i].sizeInBytes();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the union of this bitmap and <code>other</code>
+	 */
+	public CompressedBitmap or(CompressedBitmap other) {
+		CompressedBitmap result = new CompressedBitmap(new char[size + other.size], new Container[size + other.size], 0);
+		int i = 0, j = 0;
+		while (i < size && j < other.size) {
+			if (keys[i] < other.keys[j]) {
+				result.append(keys[i], containers[i++]);
+			} else if (keys[i] > other.keys[j]) {
+				result.append(other.keys[j], other.containers[j++]);
+			} else {
+				result.append(keys[i], containers[i++].or(other.containers[j++]));
+			}
+		}
+		for (; i < size; i++) {
+			result.append(keys[i], containers[i]);
+		}
+		for (; j < other.size; j++) {
+			result.append(other.keys[j], other.containers[j]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the intersection of this bitmap and <code>other</code>
+	 */
+	public CompressedBitmap and(CompressedBitmap other) {
+		CompressedBitmap result = new CompressedBitmap(new char[Math.min(size, other.size)], new Container[Math.min(size, other.size)], 0);
+		for (int i = 0, j = 0; i < size && j < other.size;) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				result.append(keys[i], containers[i++].and(other.containers[j++]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the values of this bitmap that do not belong to
+	 * <code>other</code>
+	 */
+	public CompressedBitmap andNot(CompressedBitmap other) {
+		CompressedBitmap result = new CompressedBitmap(new char[size], new Container[size], 0);
+		int j = 0;
+		for (int i = 0; i < size; i++) {
+			while (j < other.size && other.keys[j] < keys[i]) {
+				j++;
+			}
+			if (j < other.size && other.keys[j] == keys[i]) {
+				result.append(keys[i], containers[i].andNot(other.containers[j]));
+			} else {
+				result.append(keys[i], containers[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the cardinality of the intersection of this bitmap and
+	 * <code>other</code>, without computing the intersection
+	 */
+	public int andCardinality(CompressedBitmap other) {
+		int cardinality = 0;
+		for (int i = 0, j = 0; i < size && j < other.size;) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				cardinality += containers[i++].andCardinality(other.containers[j++]);
+			}
+		}
+		return cardinality;
+	}
+
+	/**
+	 * @return The values of this bitmap as a {@link BitSet}
+	 */
+	public BitSet toBitSet() {
+		if (size == 0) {
+			return new BitSet();
+		}
+		long[] words = new long[(keys[size - 1] + 1) * WORDS];
+		for (int i = 0; i < size; i++) {
+			containers[i].copyTo(words, keys[i] * WORDS);
+		}
+		return BitSet.valueOf(words);
+	}
+
+	/**
+	 * Appends a container with a key greater than all the current keys, in
+	 * a bitmap under construction; empty containers are skipped
+	 */
+	private void append(char key, Container container) {
+		if (container.cardinality() > 0) {
+			keys[size] = key;
+			containers[size++] = container;
+		}
+	}
+
+	/**
+	 * Values of a {@link CompressedBitmap} sharing their 16 most significant
+	 * bits
+	 */
+	private abstract static class Container {
+
+		abstract int cardinality();
+
+		abstract boolean contains(char value);
+
+		abstract Container or(Container other);
+
+		abstract Container and(Container other);
+
+		abstract Container andNot(Container other);
+
+		abstract int andCardinality(Container other);
+
+		abstract void copyTo(long[] words, int offset);
+
+		abstract long sizeInBytes();
+	}
+
+	private static final class ArrayContainer extends Container {
+
+		private final char[] values;
+		private final int cardinality;
+
+		private ArrayContainer(char[] values, int cardinality) {
+			this.values = values;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+		}
+
+		private BitmapContainer toBitmap() {
+			long[] words = new long[WORDS];
+			copyTo(words, 0);
+			return new BitmapContainer(words, cardinality);
+		}
+
+		@Override
+		Container or(Container other) {
+			if (other instanceof BitmapContainer) {
+				return other.or(this);
+			}
+			ArrayContainer array = (ArrayContainer) other;
+			if (cardinality + array.cardinality > ARRAY_LIMIT) {
+				return toBitmap().or(other);
+			}
+			char[] result = new char[cardinality + array.cardinality];
+			int count = 0;
+			int i = 0, j = 0;
+			while (i < cardinality && j < array.cardinality) {
+				if (values[i] < array.values[j]) {
+					result[count++] = values[i++];
+				} else if (values[i] > array.values[j]) {
+					result[count++] = array.values[j++];
+				} else {
+					result[count++] = values[i++];
+					j++;
+				}
+			}
+			while (i < cardinality) {
+				result[count++] = values[i++];
+			}
+			while (j < array.cardinality) {
+				result[count++] = array.values[j++];
+			}
+			return new ArrayContainer(result, count);
+		}
+
+		@Override
+		Container and(Container other) {
+			char[] result = new char[cardinality];
+			int count = 0;
+			if (other instanceof BitmapContainer) {
+				for (int i = 0; i < cardinality; i++) {
+					if (other.contains(values[i])) {
+						result[count++] = values[i];
+					}
+				}
+			} else {
+				ArrayContainer array = (ArrayContainer) other;
+				for (int i = 0, j = 0; i < cardinality && j < array.cardinality;) {
+					if (values[i] < array.values[j]) {
+						i++;
+					} else if (values[i] > array.values[j]) {
+						j++;
+					} else {
+						result[count++] = values[i++];
+						j++;
+					}
+				}
+			}
+			return new ArrayContainer(result, count);
+		}
+
+		@Override
+		Container andNot(Container other) {
+			char[] result = new char[cardinality];
+			int count = 0;
+			if (other instanceof BitmapContainer) {
+				for (int i = 0; i < cardinality; i++) {
+					if (!other.contains(values[i])) {
+						result[count++] = values[i];
+					}
+				}
+			} else {
+				ArrayContainer array = (ArrayContainer) other;
+				int j = 0;
+				for (int i = 0; i < cardinality; i++) {
+					while (j < array.cardinality && array.values[j] < values[i]) {
+						j++;
+					}
+					if (j == array.cardinality || array.values[j] != values[i]) {
+						result[count++] = values[i];
+					}
+				}
+			}
+			return new ArrayContainer(result, count);
+		}
+
+		@Override
+		int andCardinality(Container other) {
+			int count = 0;
+			if (other instanceof BitmapContainer) {
+				for (int i = 0; i < cardinality; i++) {
+					if (other.contains(values[i])) {
+						count++;
+					}
+				}
+			} else {
+				ArrayContainer array = (ArrayContainer) other;
+				for (int i = 0, j = 0; i < cardinality && j < array.cardinality;) {
+					if (values[i] < array.values[j]) {
+						i++;
+					} else if (values[i] > array.values[j]) {
+						j++;
+					} else {
+						count++;
+						i++;
+						j++;
+					}
+				}
+			}
+			return count;
+		}
+
+		@Override
+		void copyTo(long[] words, int offset) {
+			for (int i = 0; i < cardinality; i++) {
+				words[offset + (values[i] >>> 6)] |= 1L << values[i];
+			}
+		}
+
+		@Override
+		long sizeInBytes() {
+			return values.length * 2L;
+		}
+	}
+
+	private static final class BitmapContainer extends Container {
+
+		private final long[] words;
+		private final int cardinality;
+
+		private BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		@Override
+		int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return (words[value >>> 6] & (1L << value)) != 0;
+		}
+
+		@Override
+		Container or(Container other) {
+			long[] result = words.clone();
+			if (other instanceof BitmapContainer) {
+				long[] otherWords = ((BitmapContainer) other).words;
+				for (int i = 0; i < WORDS; i++) {
+					result[i] |= otherWords[i];
+				}
+			} else {
+				other.copyTo(result, 0);
+			}
+			return new BitmapContainer(result, bitCount(result));
+		}
+
+		@Override
+		Container and(Container other) {
+			if (other instanceof ArrayContainer) {
+				return other.and(this);
+			}
+			long[] result = words.clone();
+			long[] otherWords = ((BitmapContainer) other).words;
+			for (int i = 0; i < WORDS; i++) {
+				result[i] &= otherWords[i];
+			}
+			return fromWords(result);
+		}
+
+		@Override
+		Container andNot(Container other) {
+			long[] result = words.clone();
+			if (other instanceof BitmapContainer) {
+				long[] otherWords = ((BitmapContainer) other).words;
+				for (int i = 0; i < WORDS; i++) {
+					result[i] &= ~otherWords[i];
+				}
+			} else {
+				ArrayContainer array = (ArrayContainer) other;
+				for (int i = 0; i < array.cardinality; i++) {
+					result[array.values[i] >>> 6] &= ~(1L << array.values[i]);
+				}
+			}
+			return fromWords(result);
+		}
+
+		@Override
+		int andCardinality(Container other) {
+			if (other instanceof ArrayContainer) {
+				return other.andCardinality(this);
+			}
+			long[] otherWords = ((BitmapContainer) other).words;
+			int count = 0;
+			for (int i = 0; i < WORDS; i++) {
+				count += Long.bitCount(words[i] & otherWords[i]);
+			}
+			return count;
+		}
+
+		@Override
+		void copyTo(long[] words, int offset) {
+			System.arraycopy(this.words, 0, words, offset, WORDS);
+		}
+
+		@Override
+		long sizeInBytes() {
+			return WORDS * 8L;
+		}
+
+		/**
+		 * Returns a container with the given bits, converted to an array
+		 * container if it is small enough
+		 */
+		private static Container fromWords(long[] words) {
+			int cardinality = bitCount(words);
+			if (cardinality > ARRAY_LIMIT) {
+				return new BitmapContainer(words, cardinality);
+			}
+			char[] values = new char[cardinality];
+			int count = 0;
+			for (int i = 0; i < WORDS; i++) {
+				for (long word = words[i]; word != 0; word &= word - 1) {
+					values[count++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+				}
+			}
+			return new ArrayContainer(values, cardinality);
+		}
+
+		private static int bitCount(long[] words) {
+			int count = 0;
+			for (long word : words) {
+				count += Long.bitCount(word);
+			}
+			return count;
+		}
+	}
+}
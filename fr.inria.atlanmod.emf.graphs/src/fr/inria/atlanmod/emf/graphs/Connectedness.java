@@ -1,235 +1,1317 @@
-/*******************************************************************************
- * Copyright (c) 2015 Abel Gmez.
- * All rights reserved. This program and the accompanying materials
- * are made available under the terms of the Eclipse Public License v1.0
- * which accompanies this distribution, and is available at
- * http://www.eclipse.org/legal/epl-v10.html
- * 
- * Contributors:
- *     Abel Gmez - initial API and implementation
- ******************************************************************************/
-package fr.inria.atlanmod.emf.graphs;
-
-import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;
-import java.util.Set;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
-import org.apache.commons.cli.CommandLine;
-import org.apache.commons.cli.CommandLineParser;
-import org.apache.commons.cli.HelpFormatter;
-import org.apache.commons.cli.Option;
-import org.apache.commons.cli.OptionBuilder;
-import org.apache.commons.cli.Options;
-import org.apache.commons.cli.ParseException;
-import org.apache.commons.cli.PosixParser;
-import org.eclipse.emf.common.util.URI;
-import org.eclipse.emf.ecore.EClassifier;
-import org.eclipse.emf.ecore.EObject;
-import org.eclipse.emf.ecore.EPackage;
-import org.eclipse.emf.ecore.EPackage.Registry;
-import org.eclipse.emf.ecore.EReference;
-import org.eclipse.emf.ecore.resource.Resource;
-import org.eclipse.emf.ecore.resource.ResourceSet;
-import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
-import org.eclipse.emf.ecore.util.EcoreUtil;
-import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
-
-public class Connectedness {
-	private static final Logger LOG = Logger.getLogger(Connectedness.class.getName());
-
-	private static final String INPUT_METAMODEL = "m";
-	private static final String INPUT_MODEL = "i";
-	private static final String INPUT_METAMODEL_LONG = "metamodel";
-	private static final String INPUT_MODEL_LONG = "input-model";
-	private static final String LOG_UNREACHABLE = "u";
-	private static final String LOG_UNREACHABLE_LONG = "log-unreachable";
-
-	private static final String[] CANDIDATE_ECLASS_NAMES = {
-		"IfcProject",
-		"IfcBuilding",
-//		"IfcBuildingStorey",
-//		"IfcLocalPlacement",
-//		"IfcRelAggregates",
-//		"IfcRelContainedInSpatialStructure",
-//		"IfcSite",
-//		"IfcWall",
-	};
-	
-	public static void main(String[] args) {
-		
-		Options options = createOptions();
-
-		CommandLineParser parser = new PosixParser();
-
-		try {
-			CommandLine commandLine = parser.parse(options, args);
-			String inputMetamodel = commandLine.getOptionValue(INPUT_METAMODEL);
-			String inputModel = commandLine.getOptionValue(INPUT_MODEL);
-			Boolean logUnreachable = commandLine.hasOption(LOG_UNREACHABLE);
-
-			ResourceSet resourceSet = new ResourceSetImpl();
-			Resource.Factory.Registry.INSTANCE.getExtensionToFactoryMap().put(
-					Resource.Factory.Registry.DEFAULT_EXTENSION, 
-					new XMIResourceFactoryImpl());
-
-			{
-				LOG.log(Level.INFO, "Loading input metamodel");
-				URI uri = URI.createFileURI(inputMetamodel);
-				Resource resource = resourceSet.getResource(uri, true);
-				registerEPackages(resource);
-			}
-
-			URI uri = URI.createFileURI(inputModel);
-
-			LOG.log(Level.INFO, "Loading input model");
-			Resource resource = resourceSet.getResource(uri, true);
-
-			LOG.log(Level.INFO, "Getting input model contents");
-			Set<EObject> resourceContents = getResourceContents(resource);
-			int totalCount = resourceContents.size();
-
-			LOG.log(Level.INFO, MessageFormat.format("Input model contains {0} elements", totalCount));
-			
-			List<EClassifier> candidateEClassifiers = buildCandidateEClassifiers();
-			
-			for (Iterator<EObject> it = resource.getAllContents(); it.hasNext();) {
-				EObject eObject = it.next();
-				if (candidateEClassifiers.contains(eObject.eClass())) {
-					Set<EObject> reachableEObjects = getReachableEObjects(eObject);
-					int i = reachableEObjects.size();
-					LOG.log(Level.INFO, MessageFormat.format("Found {0} reachable objects from {1} (EClass {2})", i, EcoreUtil.getURI(eObject), eObject.eClass().getName()));
-					if (logUnreachable) {
-						Set<EObject> unreachableEObjects = new HashSet<>(resourceContents);
-						unreachableEObjects.removeAll(reachableEObjects);
-						LOG.log(Level.INFO, MessageFormat.format("{0} elements are unreachable from {1} (EClass {2})", unreachableEObjects.size(), EcoreUtil.getURI(eObject), eObject.eClass().getName()));
-						for (EObject unreachableEObject : unreachableEObjects) {
-							LOG.log(Level.INFO, MessageFormat.format("Unreachable EObject {0} is of type {1}", EcoreUtil.getURI(unreachableEObject), unreachableEObject.eClass()));
-						}
-					}
-				}
-			}
-
-		} catch (ParseException e) {
-			LOG.log(Level.SEVERE, e.getLocalizedMessage(), e);
-			LOG.log(Level.INFO, "Current arguments: " + Arrays.toString(args));
-			HelpFormatter formatter = new HelpFormatter();
-			formatter.printHelp("java -jar <this-file.jar>", options, true);
-		} catch (Throwable e) {
-			LOG.log(Level.SEVERE, e.getLocalizedMessage(), e);
-			MessageUtil.showError(e.toString());
-		}
-	}
-
-	/**
-	 * Builds the list of candidate {@link EClassifier}s, i.e., returns a
-	 * {@link List} of the {@link EClassifier}s in the whole {@link EPackage}
-	 * {@link Registry} whose names match <code>CANDIDATE_ECLASS_NAMES</code>
-	 * 
-	 * @return The list of candidate {@link EClassifier}s
-	 */
-	protected static List<EClassifier> buildCandidateEClassifiers() {
-		List<EClassifier> candidateEClassifiers = new ArrayList<>();
-		for (String eClassName : CANDIDATE_ECLASS_NAMES) {
-			for (Object obj : EPackage.Registry.INSTANCE.values()) {
-				if (obj instanceof EPackage) {
-					EPackage ePackage = (EPackage) obj;
-					candidateEClassifiers.add(ePackage.getEClassifier(eClassName));
-				}
-			}
-		}
-		return candidateEClassifiers;
-	}
-
-	/**
-	 * Returns the {@link Set} of {@link EObject}s that can be reached by
-	 * navigating {@link EReference}s, starting from <code>initialEObject</code>
-	 * 
-	 * @param initialEObject
-	 *            The initial {@link EObject}
-	 * @return The {@link Set} of reachable {@link EObject}s
-	 */
-	private static Set<EObject> getReachableEObjects(EObject initialEObject) {
-		Set<EObject> visited = new HashSet<>();
-		Queue<EObject> next = new LinkedList<EObject>();
-		next.add(initialEObject);
-		
-		while (!next.isEmpty()) {
-			EObject activeEObject = next.poll();
-			if (visited.add(activeEObject)) {
-				next.addAll(activeEObject.eContents());
-				next.addAll(activeEObject.eCrossReferences());
-			}
-		}
-		
-		return visited;
-	}
-
-	
-	protected static Set<EObject> getResourceContents(Resource resource) {
-		Set<EObject> visited = new HashSet<>();
-		for (Iterator<EObject> it = resource.getAllContents(); it.hasNext(); visited.add(it.next()));
-		return visited;
-	}
-
-	/**
-	 * Registers in the global {@link Registry} all the {@link EPackage}s
-	 * contained in the given {@link Resource}
-	 * 
-	 * @param resource
-	 */
-	private static void registerEPackages(Resource resource) {
-		for (Iterator<EObject> it = resource.getAllContents(); it.hasNext();) {
-			EObject eObject = it.next();
-			if (eObject instanceof EPackage) {
-				EPackage ePackage = (EPackage) eObject;
-				EPackage.Registry.INSTANCE.put(ePackage.getNsURI(), ePackage);
-			}
-		}
-	}
-
-	/**
-	 * Creates the program options
-	 * 
-	 * @param options
-	 * @return
-	 */
-	private static Options createOptions() {
-
-		Options options = new Options();
-
-		Option inputMetamodelOpt = OptionBuilder.create(INPUT_METAMODEL);
-		inputMetamodelOpt.setLongOpt(INPUT_METAMODEL_LONG);
-		inputMetamodelOpt.setArgName("source.ecore");
-		inputMetamodelOpt.setDescription("Path of the source metamodel file");
-		inputMetamodelOpt.setArgs(1);
-		inputMetamodelOpt.setRequired(true);
-
-		Option inputModelOpt = OptionBuilder.create(INPUT_MODEL);
-		inputModelOpt.setLongOpt(INPUT_MODEL_LONG);
-		inputModelOpt.setArgName("input.xmi");
-		inputModelOpt.setDescription("Path of the input file");
-		inputModelOpt.setArgs(1);
-		inputModelOpt.setRequired(true);
-
-		Option logUnreachableOpt = OptionBuilder.create(LOG_UNREACHABLE);
-		logUnreachableOpt.setLongOpt(LOG_UNREACHABLE_LONG);
-		logUnreachableOpt.setDescription("Log information about unreachable objects");
-		logUnreachableOpt.setArgs(0);
-		logUnreachableOpt.setRequired(false);
-		
-		options.addOption(inputMetamodelOpt);
-		options.addOption(inputModelOpt);
-		options.addOption(logUnreachableOpt);
-
-		return options;
-	}
-
-}
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.OptionBuilder;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EPackage.Registry;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+
+public class Connectedness {
+	private static final Logger LOG = Logger.getLogger(Connectedness.class.getName());
+
+	private static final String INPUT_METAMODEL = "m";
+	private static final String INPUT_MODEL = "i";
+	private static final String INPUT_METAMODEL_LONG = "metamodel";
+	private static final String INPUT_MODEL_LONG = "input-model";
+	private static final String LOG_UNREACHABLE = "u";
+	private static final String LOG_UNREACHABLE_LONG = "log-unreachable";
+	private static final String MULTI_SOURCE = "s";
+	private static final String MULTI_SOURCE_LONG = "multi-source";
+	private static final String THREADS = "t";
+	private static final String THREADS_LONG = "threads";
+	private static final String COMPONENTS = "c";
+	private static final String COMPONENTS_LONG = "components";
+	private static final String STREAMING = "x";
+	private static final String STREAMING_LONG = "streaming";
+	private static final String CACHE_DIR = "k";
+	private static final String CACHE_DIR_LONG = "cache-dir";
+	private static final String BATCH = "b";
+	private static final String BATCH_LONG = "batch";
+	private static final String ROOTS = "r";
+	private static final String ROOTS_LONG = "roots";
+	private static final String METRICS = "j";
+	private static final String METRICS_LONG = "metrics";
+	private static final String FOLLOW = "f";
+	private static final String FOLLOW_LONG = "follow";
+	private static final String IGNORE = "g";
+	private static final String IGNORE_LONG = "ignore";
+	private static final String CONTAINMENT_ONLY = "o";
+	private static final String CONTAINMENT_ONLY_LONG = "containment-only";
+	private static final String DOMINATORS = "d";
+	private static final String DOMINATORS_LONG = "dominators";
+	private static final String PARTITION = "p";
+	private static final String PARTITION_LONG = "partition";
+	private static final String PARTITION_DIR = "w";
+	private static final String PARTITION_DIR_LONG = "partition-dir";
+	private static final String LAZY = "l";
+	private static final String LAZY_LONG = "lazy";
+	private static final String OFF_HEAP = "e";
+	private static final String OFF_HEAP_LONG = "off-heap";
+	private static final String UNREACHABLE_REPORT = "n";
+	private static final String UNREACHABLE_REPORT_LONG = "unreachable-report";
+	private static final String OVERLAP = "a";
+	private static final String OVERLAP_LONG = "overlap";
+	private static final String STATISTICS = "y";
+	private static final String STATISTICS_LONG = "statistics";
+	private static final String APPROXIMATE = "q";
+	private static final String APPROXIMATE_LONG = "approximate";
+	private static final String EXPLAIN = "v";
+	private static final String EXPLAIN_LONG = "explain";
+	private static final String TYPE_PRUNING = "z";
+	private static final String TYPE_PRUNING_LONG = "type-pruning";
+
+	private static final String[] CANDIDATE_ECLASS_NAMES = {
+		"IfcProject",
+		"IfcBuilding",
+//		"IfcBuildingStorey",
+//		"IfcLocalPlacement",
+//		"IfcRelAggregates",
+//		"IfcRelContainedInSpatialStructure",
+//		"IfcSite",
+//		"IfcWall",
+	};
+	
+	public static void main(String[] args) {
+		
+		Options options = createOptions();
+
+		CommandLineParser parser = new PosixParser();
+
+		try {
+			CommandLine commandLine = parser.parse(options, args);
+			String inputMetamodel = commandLine.getOptionValue(INPUT_METAMODEL);
+			String inputModel = commandLine.getOptionValue(INPUT_MODEL);
+			String unreachableReport = commandLine.getOptionValue(UNREACHABLE_REPORT);
+			Boolean logUnreachable = commandLine.hasOption(LOG_UNREACHABLE) || unreachableReport != null;
+			Boolean multiSource = commandLine.hasOption(MULTI_SOURCE);
+			Boolean components = commandLine.hasOption(COMPONENTS);
+			Boolean streaming = commandLine.hasOption(STREAMING);
+			Boolean offHeap = commandLine.hasOption(OFF_HEAP);
+			int threads = commandLine.hasOption(THREADS) ? ((Number) commandLine.getParsedOptionValue(THREADS)).intValue() : 1;
+			String cacheDir = commandLine.getOptionValue(CACHE_DIR);
+			String batch = commandLine.getOptionValue(BATCH);
+			String[] rootEClassNames = commandLine.hasOption(ROOTS) ? commandLine.getOptionValues(ROOTS) : CANDIDATE_ECLASS_NAMES;
+			String metricsFile = commandLine.getOptionValue(METRICS);
+			String[] followedReferences = commandLine.getOptionValues(FOLLOW);
+			String[] ignoredReferences = commandLine.getOptionValues(IGNORE);
+			Boolean containmentOnly = commandLine.hasOption(CONTAINMENT_ONLY);
+			int topRetained = commandLine.hasOption(DOMINATORS) ? ((Number) commandLine.getParsedOptionValue(DOMINATORS)).intValue() : 0;
+			int partitions = commandLine.hasOption(PARTITION) ? ((Number) commandLine.getParsedOptionValue(PARTITION)).intValue() : 0;
+			String partitionDir = commandLine.getOptionValue(PARTITION_DIR);
+			int maxLoadedResources = commandLine.hasOption(LAZY) ? ((Number) commandLine.getParsedOptionValue(LAZY)).intValue() : 0;
+			String overlap = commandLine.getOptionValue(OVERLAP);
+			Boolean statistics = commandLine.hasOption(STATISTICS);
+			String[] explainFragments = commandLine.getOptionValues(EXPLAIN);
+			Boolean typePruning = commandLine.hasOption(TYPE_PRUNING);
+			double relativeError = commandLine.hasOption(APPROXIMATE) ? ((Number) commandLine.getParsedOptionValue(APPROXIMATE)).doubleValue() : 0;
+			if (inputModel == null && batch == null) {
+				throw new ParseException(MessageFormat.format("Missing required option: {0} or {1}", INPUT_MODEL, BATCH));
+			}
+			if (batch != null && (inputModel != null || logUnreachable || unreachableReport != null || multiSource || components || topRetained > 0 || overlap != null)) {
+				throw new ParseException(MessageFormat.format("Option {0} can not be combined with options {1}, {2}, {3}, {4}, {5}, {6} or {7}", 
+						BATCH, INPUT_MODEL, LOG_UNREACHABLE, UNREACHABLE_REPORT, MULTI_SOURCE, COMPONENTS, DOMINATORS, OVERLAP));
+			}
+			if ((followedReferences != null ? 1 : 0) + (ignoredReferences != null ? 1 : 0) + (containmentOnly ? 1 : 0) > 1) {
+				throw new ParseException(MessageFormat.format("Options {0}, {1} and {2} are mutually exclusive", FOLLOW, IGNORE, CONTAINMENT_ONLY));
+			}
+			if (partitions > 0 && (inputModel == null || streaming)) {
+				throw new ParseException(MessageFormat.format("Option {0} requires option {1}, and can not be combined with option {2}", PARTITION, INPUT_MODEL, STREAMING));
+			}
+			if (offHeap && (inputModel == null || partitions > 0 || maxLoadedResources > 0)) {
+				throw new ParseException(MessageFormat.format("Option {0} requires option {1}, and can not be combined with options {2} or {3}", OFF_HEAP, INPUT_MODEL, PARTITION, LAZY));
+			}
+			if (maxLoadedResources > 0 && (inputModel == null || streaming || partitions > 0)) {
+				throw new ParseException(MessageFormat.format("Option {0} requires option {1}, and can not be combined with options {2} or {3}", LAZY, INPUT_MODEL, STREAMING, PARTITION));
+			}
+			if (overlap != null && (inputModel == null || partitions > 0 || maxLoadedResources > 0)) {
+				throw new ParseException(MessageFormat.format("Option {0} requires option {1}, and can not be combined with options {2} or {3}", OVERLAP, INPUT_MODEL, PARTITION, LAZY));
+			}
+			if (statistics && (inputModel == null || streaming || partitions > 0 || maxLoadedResources > 0)) {
+				throw new ParseException(MessageFormat.format("Option {0} requires option {1}, and can not be combined with options {2}, {3} or {4}", STATISTICS, INPUT_MODEL, STREAMING, PARTITION, LAZY));
+			}
+			if (explainFragments != null && (inputModel == null || partitions > 0 || maxLoadedResources > 0 || statistics)) {
+				throw new ParseException(MessageFormat.format("Option {0} requires option {1}, and can not be combined with options {2}, {3} or {4}", EXPLAIN, INPUT_MODEL, PARTITION, LAZY, STATISTICS));
+			}
+			if (typePruning && components) {
+				throw new ParseException(MessageFormat.format("Option {0} can not be combined with option {1}", TYPE_PRUNING, COMPONENTS));
+			}
+			if ((followedReferences != null || ignoredReferences != null || containmentOnly || typePruning) && (partitions > 0 || statistics)) {
+				throw new ParseException(MessageFormat.format("Options {0}, {1}, {2} and {3} can not be combined with options {4} or {5}", 
+						FOLLOW, IGNORE, CONTAINMENT_ONLY, TYPE_PRUNING, PARTITION, STATISTICS));
+			}
+			if (commandLine.hasOption(APPROXIMATE) && !(relativeError > 0 && relativeError < 1)) {
+				throw new ParseException(MessageFormat.format("Invalid relative error: {0}", commandLine.getOptionValue(APPROXIMATE)));
+			}
+			if (relativeError > 0 && (inputModel == null || partitions > 0 || maxLoadedResources > 0 || statistics || multiSource || logUnreachable || overlap != null)) {
+				throw new ParseException(MessageFormat.format("Option {0} requires option {1}, and can not be combined with options {2}, {3}, {4}, {5}, {6} or {7}", 
+						APPROXIMATE, INPUT_MODEL, PARTITION, LAZY, STATISTICS, MULTI_SOURCE, LOG_UNREACHABLE, OVERLAP));
+			}
+			if (commandLine.hasOption(THREADS) && threads < 1) {
+				throw new ParseException(MessageFormat.format("Invalid number of threads: {0}", commandLine.getOptionValue(THREADS)));
+			}
+			if (commandLine.hasOption(THREADS) && (multiSource || relativeError > 0 || partitions > 0 || statistics || maxLoadedResources > 0)) {
+				throw new ParseException(MessageFormat.format("Option {0} can not be combined with options {1}, {2}, {3}, {4} or {5}", 
+						THREADS, MULTI_SOURCE, APPROXIMATE, PARTITION, STATISTICS, LAZY));
+			}
+
+			ResourceSet resourceSet = new ResourceSetImpl();
+			Resource.Factory.Registry.INSTANCE.getExtensionToFactoryMap().put(
+					Resource.Factory.Registry.DEFAULT_EXTENSION, 
+					new XMIResourceFactoryImpl());
+
+			PhaseMetrics metrics = new PhaseMetrics();
+
+			String nsURI;
+			List<EPackage> ePackages = new ArrayList<>();
+			{
+				LOG.log(Level.INFO, "Loading input metamodel");
+				PhaseMetrics.Phase phase = metrics.start("metamodel", inputMetamodel);
+				URI uri = URI.createFileURI(inputMetamodel);
+				Resource resource = resourceSet.getResource(uri, true);
+				nsURI = registerEPackages(resource);
+				for (EObject eObject : resource.getContents()) {
+					if (eObject instanceof EPackage) {
+						ePackages.add((EPackage) eObject);
+					}
+				}
+				phase.end();
+			}
+
+			GraphCache cache = cacheDir != null ? new GraphCache(new File(cacheDir)) : null;
+
+			ReferenceFilter filter = null;
+			if (followedReferences != null) {
+				filter = ReferenceFilter.include(ReferenceFilter.findEReferences(followedReferences));
+			} else if (ignoredReferences != null) {
+				filter = ReferenceFilter.exclude(ReferenceFilter.findEReferences(ignoredReferences));
+			} else if (containmentOnly) {
+				filter = ReferenceFilter.containmentOnly();
+			}
+			if (filter != null) {
+				LOG.log(Level.INFO, MessageFormat.format("Following references: {0}", filter));
+			}
+			if (typePruning) {
+				PhaseMetrics.Phase phase = metrics.start("types", null);
+				TypeReachability typeReachability = TypeReachability.compute(ePackages, buildCandidateEClasses(rootEClassNames), filter);
+				phase.end();
+				LOG.log(Level.INFO, MessageFormat.format("{0} of {1} EClasses of the metamodel can not be reached from the candidate EClasses, their references are not recorded", 
+						typeReachability.getUnreachableEClasses().size(), typeReachability.getEClassCount()));
+				filter = (filter != null ? filter : ReferenceFilter.exclude(Collections.<EReference> emptySet())).prune(typeReachability);
+			}
+
+			if (partitions > 0) {
+				File modelFile = new File(inputModel);
+				partition(modelFile, partitions, partitionDir != null ? new File(partitionDir) : modelFile.getAbsoluteFile().getParentFile(), metrics);
+			} else if (statistics) {
+				statistics(new File(inputModel), metrics);
+			} else if (maxLoadedResources > 0) {
+				analyzeLazily(new File(inputModel), filter, buildCandidateEClasses(rootEClassNames), multiSource, maxLoadedResources, metrics);
+			} else if (batch != null) {
+				analyzeBatch(batch, nsURI, streaming, cache, filter, buildCandidateEClasses(rootEClassNames), threads, metrics);
+			} else {
+				UnreachableReport report = null;
+				if (unreachableReport != null) {
+					File reportFile = new File(unreachableReport);
+					LOG.log(Level.INFO, MessageFormat.format("Writing unreachable objects to {0}", reportFile));
+					report = new UnreachableReport(reportFile, UnreachableReport.Format.forFile(reportFile));
+				}
+				try {
+					analyze(new File(inputModel), nsURI, streaming, offHeap, cache, filter, buildCandidateEClasses(rootEClassNames), multiSource, relativeError, threads, components, topRetained, logUnreachable, report, 
+							overlap != null ? new File(overlap) : null, explainFragments, metrics);
+				} finally {
+					if (report != null) {
+						report.close();
+						LOG.log(Level.INFO, MessageFormat.format("{0} unreachable objects written to {1}", report.getRecordCount(), unreachableReport));
+					}
+				}
+			}
+
+			metrics.log();
+			if (metricsFile != null) {
+				LOG.log(Level.INFO, MessageFormat.format("Writing metrics report to {0}", metricsFile));
+				metrics.writeJson(new File(metricsFile));
+			}
+		} catch (ParseException e) {
+			LOG.log(Level.SEVERE, e.getLocalizedMessage(), e);
+			LOG.log(Level.INFO, "Current arguments: " + Arrays.toString(args));
+			HelpFormatter formatter = new HelpFormatter();
+			formatter.printHelp("java -jar <this-file.jar>", options, true);
+		} catch (Throwable e) {
+			LOG.log(Level.SEVERE, e.getLocalizedMessage(), e);
+			MessageUtil.showError(e.toString());
+		}
+	}
+
+	/**
+	 * Analyzes a single model file, logging the number of objects reachable
+	 * from every candidate object and, optionally, its connected components
+	 * 
+	 * @param modelFile
+	 *            The model file
+	 * @param nsURI
+	 *            The <code>nsURI</code> of the (already registered)
+	 *            metamodel
+	 * @param streaming
+	 *            Whether the graph must be extracted by streaming the file
+	 * @param offHeap
+	 *            Whether the graph, and the scratch arrays of its traversals,
+	 *            must be stored outside of the Java heap
+	 * @param cache
+	 *            The {@link GraphCache}, or <code>null</code>
+	 * @param filter
+	 *            The {@link ReferenceFilter} of the followed references, or
+	 *            <code>null</code> to follow all of them
+	 * @param candidateEClasses
+	 *            The {@link EClass}es of the objects from which
+	 *            reachability is computed
+	 * @param multiSource
+	 *            Whether the candidate objects are traversed at once
+	 * @param relativeError
+	 *            The standard error of the estimated number of reachable
+	 *            objects, or <code>0</code> to count them exactly
+	 * @param threads
+	 *            The number of threads used to expand each frontier
+	 * @param components
+	 *            Whether the connected components must be logged
+	 * @param topRetained
+	 *            The number of elements with the largest retained size
+	 *            that must be logged, or <code>0</code>
+	 * @param logUnreachable
+	 *            Whether the unreachable {@link EObject}s must be logged
+	 * @param report
+	 *            The {@link UnreachableReport} where unreachable
+	 *            {@link EObject}s are written instead of being logged, or
+	 *            <code>null</code>
+	 * @param overlapFile
+	 *            The CSV file where the overlap matrix of the reachable sets
+	 *            of the candidate objects is written, or <code>null</code>
+	 * @param explainFragments
+	 *            The URI fragments of the objects whose shortest path from
+	 *            the candidate objects must be logged, or <code>null</code>
+	 * @param metrics
+	 *            The {@link PhaseMetrics} where phases are recorded
+	 * @throws IOException
+	 *             If the model file or the cache can not be read, or the
+	 *             reports can not be written
+	 * @throws InterruptedException
+	 *             If interrupted while waiting for the report to be written
+	 */
+	private static void analyze(File modelFile, String nsURI, boolean streaming, boolean offHeap, GraphCache cache, ReferenceFilter filter, List<EClass> candidateEClasses, 
+			boolean multiSource, double relativeError, int threads, boolean components, int topRetained, boolean logUnreachable, UnreachableReport report, File overlapFile, String[] explainFragments, PhaseMetrics metrics) throws IOException, InterruptedException {
+		ModelGraph graph = loadGraph(modelFile, nsURI, streaming, offHeap, cache, filter, metrics);
+		int totalCount = graph.resourceSize();
+
+		LOG.log(Level.INFO, MessageFormat.format("Input model contains {0} elements", totalCount));
+
+		PhaseMetrics.Phase phase = metrics.start("candidates", null);
+		int[] roots = findCandidateNodes(graph, candidateEClasses);
+		phase.end();
+
+		if (filter != null && filter.getTypeReachability() != null) {
+			logStructurallyUnreachable(graph, filter.getTypeReachability());
+		}
+
+		CompressedBitmap[] reachableSets = overlapFile != null ? new CompressedBitmap[roots.length] : null;
+		if (relativeError > 0) {
+			ApproximateReachability approximateReachability = new ApproximateReachability(relativeError);
+			LOG.log(Level.INFO, MessageFormat.format("Estimating reachable objects with sketches of {0} registers (standard error {1,number,#.##%})", 
+					approximateReachability.getRegisterCount(), approximateReachability.getRelativeError()));
+			phase = metrics.start("components", "strong");
+			Components strong = Components.strong(graph);
+			phase.end();
+			phase = metrics.start("approximate", null);
+			double[] estimates = approximateReachability.estimate(graph, strong, roots);
+			phase.end();
+			for (int i = 0; i < roots.length; i++) {
+				LOG.log(Level.INFO, MessageFormat.format("Found approximately {0,number,#,##0} reachable objects from {1} (EClass {2})", 
+						estimates[i], graph.getURI(roots[i]), graph.getEClass(roots[i]).getName()));
+			}
+		} else if (multiSource) {
+			int[] counts = new int[roots.length];
+			// The scratch arrays of the traversals are allocated once, with
+			// the graph
+			LongArray lanes = LongArray.allocate(graph.size(), offHeap);
+			IntArray queue = IntArray.allocate(graph.size(), offHeap);
+			for (int offset = 0; offset < roots.length; offset += Reachability.LANES) {
+				phase = metrics.start("traversal", MessageFormat.format("roots {0,number,#}-{1,number,#}", offset, Math.min(offset + Reachability.LANES, roots.length) - 1));
+				Reachability.getReachableLanes(graph, roots, offset, lanes, queue);
+				Reachability.countLanes(lanes, counts, offset);
+				phase.end();
+				for (int lane = 0; lane < Reachability.LANES && offset + lane < roots.length; lane++) {
+					BitSet reachableNodes = logUnreachable || reachableSets != null ? Reachability.getLane(lanes, lane) : null;
+					if (reachableSets != null) {
+						reachableSets[offset + lane] = CompressedBitmap.valueOf(reachableNodes);
+					}
+					logReachability(graph, roots[offset + lane], counts[offset + lane], reachableNodes, logUnreachable, report);
+				}
+			}
+		} else if (threads > 1) {
+			LOG.log(Level.INFO, MessageFormat.format("Traversing the model using {0} threads", threads));
+			ParallelReachability parallelReachability = new ParallelReachability(threads);
+			try {
+				for (int i = 0; i < roots.length; i++) {
+					int root = roots[i];
+					phase = metrics.start("traversal", graph.getURI(root).toString());
+					BitSet reachableNodes = parallelReachability.getReachableNodes(graph, root);
+					phase.end();
+					if (reachableSets != null) {
+						reachableSets[i] = CompressedBitmap.valueOf(reachableNodes);
+					}
+					logReachability(graph, root, reachableNodes.cardinality(), reachableNodes, logUnreachable, report);
+				}
+			} finally {
+				parallelReachability.shutdown();
+			}
+		} else {
+			IntArray queue = IntArray.allocate(graph.size(), offHeap);
+			for (int i = 0; i < roots.length; i++) {
+				int root = roots[i];
+				phase = metrics.start("traversal", graph.getURI(root).toString());
+				BitSet reachableNodes = Reachability.getReachableNodes(graph, root, queue);
+				phase.end();
+				if (reachableSets != null) {
+					reachableSets[i] = CompressedBitmap.valueOf(reachableNodes);
+				}
+				logReachability(graph, root, reachableNodes.cardinality(), reachableNodes, logUnreachable, report);
+			}
+		}
+
+		if (explainFragments != null) {
+			phase = metrics.start("explain", null);
+			logShortestPaths(graph, roots, explainFragments);
+			phase.end();
+		}
+
+		if (reachableSets != null) {
+			phase = metrics.start("overlap", null);
+			logOverlap(graph, roots, reachableSets, overlapFile);
+			phase.end();
+		}
+
+		if (components) {
+			LOG.log(Level.INFO, "Computing weakly connected components");
+			phase = metrics.start("components", "weak");
+			Components weak = Components.weak(graph);
+			phase.end();
+			logComponents(graph, weak, "weakly");
+			LOG.log(Level.INFO, "Computing strongly connected components");
+			phase = metrics.start("components", "strong");
+			Components strong = Components.strong(graph);
+			phase.end();
+			logComponents(graph, strong, "strongly");
+		}
+
+		if (topRetained > 0) {
+			LOG.log(Level.INFO, "Computing the dominator tree");
+			phase = metrics.start("dominators", null);
+			Dominators dominators = Dominators.compute(graph, roots);
+			phase.end();
+			logRetainedSizes(graph, dominators, topRetained);
+		}
+	}
+
+	/**
+	 * Builds the {@link ModelGraph} of a model file, either by loading it as
+	 * a {@link Resource} or by streaming it, or reads it from
+	 * <code>cache</code> if it is already cached
+	 * 
+	 * @param modelFile
+	 *            The model file
+	 * @param nsURI
+	 *            The <code>nsURI</code> of the (already registered)
+	 *            metamodel
+	 * @param streaming
+	 *            Whether the graph must be extracted by streaming the file
+	 * @param offHeap
+	 *            Whether the class ids and edges of the graph must be stored
+	 *            outside of the Java heap: cached graphs are then read from
+	 *            the mapped cache entry, and other graphs are copied to
+	 *            direct buffers
+	 * @param cache
+	 *            The {@link GraphCache}, or <code>null</code>
+	 * @param filter
+	 *            The {@link ReferenceFilter} of the recorded references, or
+	 *            <code>null</code> to record all of them
+	 * @param metrics
+	 *            The {@link PhaseMetrics} where the load and indexing
+	 *            phases are recorded
+	 * @return The {@link ModelGraph}
+	 * @throws IOException
+	 *             If the model file or the cache can not be read
+	 */
+	protected static ModelGraph loadGraph(File modelFile, String nsURI, boolean streaming, boolean offHeap, GraphCache cache, ReferenceFilter filter, PhaseMetrics metrics) throws IOException {
+		URI uri = URI.createFileURI(modelFile.getPath());
+		String cacheKey = null;
+		if (cache != null) {
+			PhaseMetrics.Phase phase = metrics.start("cache", modelFile.getPath());
+			cacheKey = GraphCache.key(modelFile, nsURI, streaming, filter);
+			ModelGraph graph = cache.load(cacheKey, uri, nsURI, offHeap);
+			phase.end();
+			if (graph != null) {
+				LOG.log(Level.INFO, MessageFormat.format("Input model graph loaded from cache entry {0}", cacheKey));
+				return graph;
+			}
+		}
+		ModelGraph graph;
+		if (streaming) {
+			LOG.log(Level.INFO, MessageFormat.format("Extracting input model graph of {0}", modelFile));
+			PhaseMetrics.Phase phase = metrics.start("load", modelFile.getPath());
+			graph = new StreamingGraphLoader(EPackage.Registry.INSTANCE, filter).load(uri);
+			phase.end();
+		} else {
+			LOG.log(Level.INFO, MessageFormat.format("Loading input model {0}", modelFile));
+			PhaseMetrics.Phase phase = metrics.start("load", modelFile.getPath());
+			Resource resource = new ResourceSetImpl().getResource(uri, true);
+			phase.end();
+
+			LOG.log(Level.INFO, "Getting input model contents");
+			phase = metrics.start("index", modelFile.getPath());
+			graph = ModelGraph.build(resource, filter);
+			phase.end();
+		}
+		if (cache != null) {
+			LOG.log(Level.INFO, MessageFormat.format("Storing input model graph in cache entry {0}", cacheKey));
+			PhaseMetrics.Phase phase = metrics.start("cache", modelFile.getPath());
+			cache.store(cacheKey, nsURI, graph);
+			phase.end();
+		}
+		if (offHeap) {
+			LOG.log(Level.INFO, "Moving input model graph out of the heap");
+			PhaseMetrics.Phase phase = metrics.start("off-heap", modelFile.getPath());
+			graph = graph.toOffHeap();
+			phase.end();
+		}
+		return graph;
+	}
+
+	/**
+	 * Analyzes a model file that references other model files, logging the
+	 * number of objects reachable from every candidate object. Referenced
+	 * files are loaded on demand by a {@link LazyReachability}, keeping at
+	 * most <code>maxLoadedResources</code> of them in memory
+	 * 
+	 * @param modelFile
+	 *            The model file
+	 * @param filter
+	 *            The {@link ReferenceFilter} of the followed references, or
+	 *            <code>null</code> to follow all of them
+	 * @param candidateEClasses
+	 *            The {@link EClass}es of the objects from which
+	 *            reachability is computed
+	 * @param multiSource
+	 *            Whether the candidate objects are traversed at once
+	 * @param maxLoadedResources
+	 *            The maximum number of {@link Resource}s kept loaded
+	 * @param metrics
+	 *            The {@link PhaseMetrics} where phases are recorded
+	 */
+	private static void analyzeLazily(File modelFile, ReferenceFilter filter, List<EClass> candidateEClasses, boolean multiSource, int maxLoadedResources, PhaseMetrics metrics) {
+		ResourceSet resourceSet = new ResourceSetImpl();
+		LazyReachability lazyReachability = new LazyReachability(resourceSet, maxLoadedResources, filter);
+
+		LOG.log(Level.INFO, MessageFormat.format("Loading input model {0}", modelFile));
+		PhaseMetrics.Phase phase = metrics.start("load", modelFile.getPath());
+		Resource resource = resourceSet.getResource(URI.createFileURI(modelFile.getAbsolutePath()), true);
+		phase.end();
+
+		// Only the URIs of the candidate objects are kept, since the input
+		// model may be unloaded during the traversal
+		phase = metrics.start("candidates", null);
+		List<URI> roots = new ArrayList<>();
+		Map<URI, String> eClassNames = new HashMap<>();
+		for (Iterator<EObject> it = EcoreUtil.getAllProperContents(resource, false); it.hasNext();) {
+			EObject eObject = it.next();
+			for (EClass candidateEClass : candidateEClasses) {
+				if (candidateEClass.isSuperTypeOf(eObject.eClass())) {
+					URI uri = EcoreUtil.getURI(eObject);
+					roots.add(uri);
+					eClassNames.put(uri, eObject.eClass().getName());
+					break;
+				}
+			}
+		}
+		phase.end();
+
+		try {
+			if (multiSource) {
+				phase = metrics.start("traversal", MessageFormat.format("{0} roots", roots.size()));
+				int reachableCount = lazyReachability.traverse(roots);
+				phase.end();
+				LOG.log(Level.INFO, MessageFormat.format("Found {0} reachable objects from {1} candidate objects", reachableCount, roots.size()));
+				Map<String, Integer> resourceCounts = new TreeMap<>();
+				for (Map.Entry<URI, Integer> entry : lazyReachability.getVisitedCounts().entrySet()) {
+					resourceCounts.put(entry.getKey().toString(), entry.getValue());
+				}
+				for (Map.Entry<String, Integer> entry : resourceCounts.entrySet()) {
+					LOG.log(Level.INFO, MessageFormat.format("{0} reachable objects belong to {1}", entry.getValue(), entry.getKey()));
+				}
+			} else {
+				for (URI root : roots) {
+					lazyReachability.clear();
+					phase = metrics.start("traversal", root.toString());
+					int reachableCount = lazyReachability.traverse(Collections.singleton(root));
+					phase.end();
+					LOG.log(Level.INFO, MessageFormat.format("Found {0} reachable objects from {1} (EClass {2})", reachableCount, root, eClassNames.get(root)));
+				}
+			}
+			if (lazyReachability.getUnresolvedCount() > 0) {
+				LOG.log(Level.WARNING, MessageFormat.format("{0} references could not be resolved", lazyReachability.getUnresolvedCount()));
+			}
+			LOG.log(Level.INFO, MessageFormat.format("{0} resources loaded (keeping at most {1} loaded)", lazyReachability.getLoadCount(), maxLoadedResources));
+		} finally {
+			lazyReachability.dispose();
+		}
+	}
+
+	/**
+	 * Splits a model file into <code>parts</code> fragments with a
+	 * {@link Partitioner}, and writes them to <code>directory</code>
+	 * 
+	 * @param modelFile
+	 *            The model file
+	 * @param parts
+	 *            The number of fragments
+	 * @param directory
+	 *            The output directory
+	 * @param metrics
+	 *            The {@link PhaseMetrics} where phases are recorded
+	 * @throws IOException
+	 *             If the model file can not be read or the fragments can
+	 *             not be written
+	 */
+	private static void partition(File modelFile, int parts, File directory, PhaseMetrics metrics) throws IOException {
+		LOG.log(Level.INFO, MessageFormat.format("Loading input model {0}", modelFile));
+		PhaseMetrics.Phase phase = metrics.start("load", modelFile.getPath());
+		Resource resource = new ResourceSetImpl().getResource(URI.createFileURI(modelFile.getPath()), true);
+		phase.end();
+
+		LOG.log(Level.INFO, "Getting input model contents");
+		phase = metrics.start("index", modelFile.getPath());
+		ModelGraph graph = ModelGraph.build(resource);
+		phase.end();
+
+		LOG.log(Level.INFO, MessageFormat.format("Splitting input model into {0} fragments", parts));
+		phase = metrics.start("partition", modelFile.getPath());
+		Partitioner partitioner = new Partitioner(parts);
+		int[] assignment = partitioner.partition(graph);
+		phase.end();
+		int cutEdges = Partitioner.countCutEdges(graph, assignment);
+		LOG.log(Level.INFO, MessageFormat.format("{0} of {1} references cross fragments ({2,number,percent})", 
+				cutEdges, graph.edgeCount(), graph.edgeCount() > 0 ? (double) cutEdges / graph.edgeCount() : 0));
+
+		LOG.log(Level.INFO, MessageFormat.format("Writing fragments to {0}", directory));
+		phase = metrics.start("write", directory.getPath());
+		List<Resource> fragments = partitioner.write(graph, assignment, directory);
+		phase.end();
+		int[] sizes = partitioner.getSizes(assignment);
+		for (int part = 0; part < fragments.size(); part++) {
+			LOG.log(Level.INFO, MessageFormat.format("Fragment {0}: {1} objects", fragments.get(part).getURI().lastSegment(), sizes[part]));
+		}
+	}
+
+	/**
+	 * Logs the {@link ModelStatistics} of a model file
+	 * 
+	 * @param modelFile
+	 *            The model file
+	 * @param metrics
+	 *            The {@link PhaseMetrics} where phases are recorded
+	 */
+	private static void statistics(File modelFile, PhaseMetrics metrics) {
+		LOG.log(Level.INFO, MessageFormat.format("Loading input model {0}", modelFile));
+		PhaseMetrics.Phase phase = metrics.start("load", modelFile.getPath());
+		Resource resource = new ResourceSetImpl().getResource(URI.createFileURI(modelFile.getPath()), true);
+		phase.end();
+
+		LOG.log(Level.INFO, "Collecting model statistics");
+		phase = metrics.start("statistics", modelFile.getPath());
+		ModelStatistics statistics = ModelStatistics.compute(resource);
+		phase.end();
+
+		LOG.log(Level.INFO, MessageFormat.format("Input model contains {0} elements of {1} EClasses", statistics.getElementCount(), statistics.getClassCount()));
+		for (Map.Entry<EClass, Integer> entry : statistics.getInstanceCounts().entrySet()) {
+			LOG.log(Level.INFO, MessageFormat.format("{0} instances of EClass {1}", entry.getValue(), entry.getKey().getName()));
+		}
+		long[] depths = statistics.getDepthHistogram();
+		for (int depth = 0; depth < depths.length; depth++) {
+			LOG.log(Level.INFO, MessageFormat.format("{0} elements at containment depth {1}", depths[depth], depth));
+		}
+		LOG.log(Level.INFO, MessageFormat.format("{0} containment values, {1} cross-reference values ({2,number,#.##} per element)", 
+				statistics.getContainmentCount(), statistics.getCrossReferenceCount(), statistics.getCrossReferenceDensity()));
+		for (EReference eReference : statistics.getEReferences()) {
+			long[] histogram = statistics.getFanOutHistogram(eReference);
+			Map<String, Long> buckets = new LinkedHashMap<>();
+			for (int bucket = 0; bucket < histogram.length; bucket++) {
+				if (histogram[bucket] > 0) {
+					int lowerBound = ModelStatistics.bucketLowerBound(bucket);
+					int upperBound = bucket == 0 ? 0 : ModelStatistics.bucketLowerBound(bucket + 1) - 1;
+					buckets.put(lowerBound == upperBound ? Integer.toString(lowerBound) : lowerBound + "-" + upperBound, histogram[bucket]);
+				}
+			}
+			LOG.log(Level.INFO, MessageFormat.format("EReference {0}.{1}: {2} values, at most {3} per element, fan-out histogram {4}", 
+					eReference.getEContainingClass().getName(), eReference.getName(), statistics.getValueCount(eReference), statistics.getMaxFanOut(eReference), buckets));
+		}
+		for (EStructuralFeature feature : statistics.getFeatures()) {
+			LOG.log(Level.INFO, MessageFormat.format("EStructuralFeature {0}.{1} is unset in {2,number,percent} of its instances", 
+					feature.getEContainingClass().getName(), feature.getName(), statistics.getUnsetRatio(feature)));
+		}
+	}
+
+	/**
+	 * Analyzes all the model files matched by <code>batch</code> in this
+	 * JVM, using a {@link BatchAnalysis}, and logs a consolidated report
+	 * 
+	 * @param batch
+	 *            A directory or a glob pattern
+	 * @param nsURI
+	 *            The <code>nsURI</code> of the (already registered)
+	 *            metamodel
+	 * @param streaming
+	 *            Whether the graphs must be extracted by streaming the files
+	 * @param cache
+	 *            The {@link GraphCache}, or <code>null</code>
+	 * @param filter
+	 *            The {@link ReferenceFilter} of the followed references, or
+	 *            <code>null</code> to follow all of them
+	 * @param candidateEClasses
+	 *            The {@link EClass}es of the objects from which
+	 *            reachability is computed
+	 * @param threads
+	 *            The number of files analyzed concurrently (every file is
+	 *            traversed by a single thread)
+	 * @param metrics
+	 *            The {@link PhaseMetrics} where phases are recorded
+	 * @throws IOException
+	 *             If the files can not be listed
+	 * @throws InterruptedException
+	 *             If the analysis is interrupted
+	 */
+	private static void analyzeBatch(String batch, String nsURI, boolean streaming, GraphCache cache, ReferenceFilter filter, List<EClass> candidateEClasses, int threads, PhaseMetrics metrics) throws IOException, InterruptedException {
+		List<File> files = BatchAnalysis.findFiles(batch);
+		LOG.log(Level.INFO, MessageFormat.format("Analyzing {0} files using {1} threads", files.size(), threads));
+		BatchAnalysis batchAnalysis = new BatchAnalysis(nsURI, streaming, cache, filter, candidateEClasses, threads, metrics);
+		long start = System.currentTimeMillis();
+		List<BatchAnalysis.Result> results = batchAnalysis.analyze(files);
+		long elapsed = System.currentTimeMillis() - start;
+
+		StringBuilder report = new StringBuilder();
+		int failed = 0;
+		long totalElements = 0;
+		for (BatchAnalysis.Result result : results) {
+			report.append(System.lineSeparator());
+			if (result.getError() != null) {
+				failed++;
+				report.append(MessageFormat.format("{0}: FAILED ({1})", result.getFile(), result.getError()));
+				continue;
+			}
+			totalElements += result.getElementCount();
+			report.append(MessageFormat.format("{0}: {1} elements, {2} candidate objects, analyzed in {3}", 
+					result.getFile(), result.getElementCount(), result.getRootCount(), MessageUtil.formatMillis(result.getMillis())));
+			for (int i = 0; i < result.getRootCount(); i++) {
+				report.append(System.lineSeparator());
+				report.append(MessageFormat.format("    Found {0} reachable objects from {1} (EClass {2})", 
+						result.getReachableCount(i), result.getRootURI(i), result.getRootEClassName(i)));
+			}
+		}
+		report.append(System.lineSeparator());
+		report.append(MessageFormat.format("Analyzed {0} files ({1} failed, {2} elements) in {3}", 
+				results.size(), failed, totalElements, MessageUtil.formatMillis(elapsed)));
+		LOG.log(Level.INFO, "Batch analysis report:" + report);
+	}
+
+	/**
+	 * Builds the list of candidate {@link EClass}es, i.e., returns a
+	 * {@link List} of the {@link EClass}es in the whole {@link EPackage}
+	 * {@link Registry} whose names match <code>eClassNames</code>
+	 * 
+	 * @param eClassNames
+	 *            The names of the candidate {@link EClass}es
+	 * @return The list of candidate {@link EClass}es
+	 */
+	protected static List<EClass> buildCandidateEClasses(String[] eClassNames) {
+		List<EClass> candidateEClasses = new ArrayList<>();
+		for (String eClassName : eClassNames) {
+			boolean found = false;
+			for (Object obj : EPackage.Registry.INSTANCE.values()) {
+				if (obj instanceof EPackage) {
+					EClassifier eClassifier = ((EPackage) obj).getEClassifier(eClassName);
+					if (eClassifier instanceof EClass) {
+						candidateEClasses.add((EClass) eClassifier);
+						found = true;
+					}
+				}
+			}
+			if (!found) {
+				LOG.log(Level.WARNING, MessageFormat.format("Candidate EClass {0} not found in the registered metamodels", eClassName));
+			}
+		}
+		return candidateEClasses;
+	}
+
+	/**
+	 * Returns the nodes of <code>graph</code> that belong to its
+	 * {@link Resource} and are instances of one of
+	 * <code>candidateEClasses</code> (or of their subtypes)
+	 * 
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param candidateEClasses
+	 *            The candidate {@link EClass}es
+	 * @return The candidate nodes, in {@link Resource#getAllContents()} order
+	 */
+	protected static int[] findCandidateNodes(ModelGraph graph, List<EClass> candidateEClasses) {
+		return graph.getTypeIndex().getInstances(candidateEClasses);
+	}
+
+	/**
+	 * Logs the number of nodes reachable from <code>root</code> and,
+	 * optionally, the unreachable {@link EObject}s
+	 * 
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param root
+	 *            The initial node
+	 * @param reachableCount
+	 *            The number of reachable nodes
+	 * @param reachableNodes
+	 *            The reachable nodes; only required to log unreachable
+	 *            {@link EObject}s
+	 * @param logUnreachable
+	 *            Whether the unreachable {@link EObject}s must be logged
+	 * @param report
+	 *            The {@link UnreachableReport} where unreachable
+	 *            {@link EObject}s are written instead of being logged, or
+	 *            <code>null</code>
+	 * @throws IOException
+	 *             If the report can not be written
+	 * @throws InterruptedException
+	 *             If interrupted while waiting for the report to be written
+	 */
+	private static void logReachability(ModelGraph graph, int root, int reachableCount, BitSet reachableNodes, boolean logUnreachable, UnreachableReport report)
+			throws IOException, InterruptedException {
+		URI uri = graph.getURI(root);
+		String eClassName = graph.getEClass(root).getName();
+		LOG.log(Level.INFO, MessageFormat.format("Found {0} reachable objects from {1} (EClass {2})", reachableCount, uri, eClassName));
+		if (logUnreachable) {
+			int unreachableCount = Reachability.countUnreachableNodes(graph, reachableNodes);
+			LOG.log(Level.INFO, MessageFormat.format("{0} elements are unreachable from {1} (EClass {2})", unreachableCount, uri, eClassName));
+			if (report != null) {
+				report.add(graph, root, reachableNodes);
+				return;
+			}
+			for (int node = reachableNodes.nextClearBit(0); node < graph.resourceSize(); node = reachableNodes.nextClearBit(node + 1)) {
+				LOG.log(Level.INFO, MessageFormat.format("Unreachable EObject {0} is of type {1}", graph.getURI(node), graph.getEClass(node)));
+			}
+		}
+	}
+
+	/**
+	 * Logs the number of instances of the {@link EClass}es that can not be
+	 * reached from the candidate {@link EClass}es, which are unreachable
+	 * from every candidate object, using the {@link TypeIndex} of
+	 * <code>graph</code>
+	 * 
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param typeReachability
+	 *            The {@link TypeReachability} of the candidate
+	 *            {@link EClass}es
+	 */
+	private static void logStructurallyUnreachable(ModelGraph graph, TypeReachability typeReachability) {
+		TypeIndex typeIndex = graph.getTypeIndex();
+		int total = 0;
+		for (int classId = 0; classId < graph.classCount(); classId++) {
+			EClass eClass = graph.getClass(classId);
+			int count = typeIndex.getInstanceCount(classId);
+			if (!typeReachability.isReachable(eClass) && count > 0) {
+				LOG.log(Level.INFO, MessageFormat.format("{0} instances of EClass {1} are structurally unreachable", count, eClass.getName()));
+				total += count;
+			}
+		}
+		LOG.log(Level.INFO, MessageFormat.format("{0} elements are structurally unreachable from every candidate object", total));
+	}
+
+	/**
+	 * Logs the shortest path of references from the closest candidate
+	 * object to every object in <code>uriFragments</code>
+	 * 
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param roots
+	 *            The candidate objects
+	 * @param uriFragments
+	 *            The URI fragments of the objects
+	 */
+	private static void logShortestPaths(ModelGraph graph, int[] roots, String[] uriFragments) {
+		ShortestPaths shortestPaths = ShortestPaths.compute(graph, roots);
+		for (String uriFragment : uriFragments) {
+			int node = graph.getNode(uriFragment);
+			if (node == -1) {
+				LOG.log(Level.WARNING, MessageFormat.format("No object found with URI fragment {0}", uriFragment));
+				continue;
+			}
+			int[] path = shortestPaths.getPath(node);
+			if (path == null) {
+				LOG.log(Level.INFO, MessageFormat.format("{0} (EClass {1}) is unreachable from every candidate object", graph.getURI(node), eClassName(graph, node)));
+				continue;
+			}
+			int root = shortestPaths.getRoot(node);
+			LOG.log(Level.INFO, MessageFormat.format("{0} (EClass {1}) is reachable from {2} (EClass {3}) through {4} references", 
+					graph.getURI(node), eClassName(graph, node), graph.getURI(root), eClassName(graph, root), path.length));
+			for (int edge : path) {
+				int source = graph.edgeSource(edge);
+				int target = graph.target(edge);
+				LOG.log(Level.INFO, MessageFormat.format("  {0} (EClass {1}) -{2}-> {3} (EClass {4})", 
+						graph.getURI(source), eClassName(graph, source), referenceName(graph, edge), graph.getURI(target), eClassName(graph, target)));
+			}
+		}
+	}
+
+	private static String eClassName(ModelGraph graph, int node) {
+		EClass eClass = graph.getEClass(node);
+		return eClass != null ? eClass.getName() : null;
+	}
+
+	/**
+	 * Returns the name of the {@link EReference} of <code>edge</code>, or
+	 * the kind of the edge if the {@link EClass} of its source is unknown
+	 */
+	private static String referenceName(ModelGraph graph, int edge) {
+		EReference eReference = graph.getEReference(edge);
+		if (eReference != null) {
+			return eReference.getName();
+		}
+		return edge < graph.crossStart(graph.edgeSource(edge)) ? "containment" : "cross-reference";
+	}
+
+	/**
+	 * Logs how the reachable sets of the candidate objects overlap (objects
+	 * reachable from every root, and from exactly one root), and writes the
+	 * matrix of the sizes of their pairwise intersections as CSV
+	 * 
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param roots
+	 *            The candidate objects
+	 * @param reachableSets
+	 *            The objects reachable from each candidate object
+	 * @param file
+	 *            The CSV file of the overlap matrix
+	 * @throws IOException
+	 *             If the file can not be written
+	 */
+	private static void logOverlap(ModelGraph graph, int[] roots, CompressedBitmap[] reachableSets, File file) throws IOException {
+		if (roots.length == 0) {
+			return;
+		}
+		long compressedBytes = 0;
+		CompressedBitmap common = reachableSets[0];
+		CompressedBitmap union = reachableSets[0];
+		CompressedBitmap shared = CompressedBitmap.valueOf(new BitSet());
+		for (int i = 0; i < reachableSets.length; i++) {
+			compressedBytes += reachableSets[i].sizeInBytes();
+			if (i > 0) {
+				common = common.and(reachableSets[i]);
+				shared = shared.or(union.and(reachableSets[i]));
+				union = union.or(reachableSets[i]);
+			}
+		}
+		LOG.log(Level.INFO, MessageFormat.format("Reachable sets of {0} candidate objects take {1} compressed", roots.length, MessageUtil.byteCountToDisplaySize(compressedBytes)));
+		LOG.log(Level.INFO, MessageFormat.format("{0} objects are reachable from some candidate object, {1} from every candidate object, {2} from exactly one",
+				union.cardinality(), common.cardinality(), union.andNot(shared).cardinality()));
+		for (int i = 0; i < roots.length; i++) {
+			LOG.log(Level.INFO, MessageFormat.format("{0} objects are only reachable from {1}", reachableSets[i].andNot(shared).cardinality(), graph.getURI(roots[i])));
+		}
+
+		LOG.log(Level.INFO, MessageFormat.format("Writing overlap matrix to {0}", file));
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
+			String[] uris = new String[roots.length];
+			writer.write("root");
+			for (int i = 0; i < roots.length; i++) {
+				uris[i] = UnreachableReport.quoteCsv(graph.getURI(roots[i]).toString());
+				writer.write(',');
+				writer.write(uris[i]);
+			}
+			writer.write('\n');
+			for (int i = 0; i < roots.length; i++) {
+				writer.write(uris[i]);
+				for (int j = 0; j < roots.length; j++) {
+					writer.write(',');
+					writer.write(Integer.toString(i == j ? reachableSets[i].cardinality() : reachableSets[i].andCardinality(reachableSets[j])));
+				}
+				writer.write('\n');
+			}
+		}
+	}
+
+	/**
+	 * Logs the number of components, their size histogram, and the
+	 * {@link EClass}es of the members of the largest component
+	 * 
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param components
+	 *            The {@link Components} of <code>graph</code>
+	 * @param kind
+	 *            The kind of components (for logging purposes)
+	 */
+	private static void logComponents(ModelGraph graph, Components components, String kind) {
+		LOG.log(Level.INFO, MessageFormat.format("Found {0} {1} connected components", components.count(), kind));
+		for (Map.Entry<Integer, Integer> entry : components.sizeHistogram().entrySet()) {
+			LOG.log(Level.INFO, MessageFormat.format("{0} {1} connected components of size {2}", entry.getValue(), kind, entry.getKey()));
+		}
+		int largest = components.largest();
+		if (largest != -1) {
+			Map<String, Integer> eClassCounts = new TreeMap<>();
+			BitSet members = components.members(largest);
+			for (int node = members.nextSetBit(0); node >= 0; node = members.nextSetBit(node + 1)) {
+				EClass eClass = graph.getEClass(node);
+				String eClassName = eClass != null ? eClass.getName() : null;
+				Integer count = eClassCounts.get(eClassName);
+				eClassCounts.put(eClassName, count == null ? 1 : count + 1);
+			}
+			LOG.log(Level.INFO, MessageFormat.format("Largest {0} connected component contains {1} elements: {2}", kind, components.size(largest), eClassCounts));
+		}
+	}
+
+	/**
+	 * Logs the <code>n</code> nodes with the largest retained size, and
+	 * their immediate dominators
+	 * 
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param dominators
+	 *            The {@link Dominators} of <code>graph</code>
+	 * @param n
+	 *            The number of nodes to log
+	 */
+	private static void logRetainedSizes(ModelGraph graph, Dominators dominators, int n) {
+		LOG.log(Level.INFO, MessageFormat.format("{0} objects are reachable from the candidate objects", dominators.reachableCount()));
+		for (int node : dominators.getLargestRetainedSizes(n)) {
+			int dominator = dominators.getImmediateDominator(node);
+			LOG.log(Level.INFO, MessageFormat.format("{0} objects are retained by {1} (EClass {2}), immediately dominated by {3}", 
+					dominators.getRetainedSize(node), graph.getURI(node), graph.getEClass(node) != null ? graph.getEClass(node).getName() : null,
+					dominator != Dominators.NO_DOMINATOR ? graph.getURI(dominator) : "no object"));
+		}
+	}
+
+	/**
+	 * Returns the {@link Set} of {@link EObject}s that can be reached by
+	 * navigating {@link EReference}s, starting from <code>initialEObject</code>
+	 * 
+	 * @param initialEObject
+	 *            The initial {@link EObject}
+	 * @return The {@link Set} of reachable {@link EObject}s
+	 * @see Reachability#getReachableNodes(ModelGraph, int)
+	 */
+	protected static Set<EObject> getReachableEObjects(EObject initialEObject) {
+		Set<EObject> visited = new HashSet<>();
+		Queue<EObject> next = new LinkedList<EObject>();
+		next.add(initialEObject);
+		
+		while (!next.isEmpty()) {
+			EObject activeEObject = next.poll();
+			if (visited.add(activeEObject)) {
+				next.addAll(activeEObject.eContents());
+				next.addAll(activeEObject.eCrossReferences());
+			}
+		}
+		
+		return visited;
+	}
+
+	
+	protected static Set<EObject> getResourceContents(Resource resource) {
+		Set<EObject> visited = new HashSet<>();
+		for (Iterator<EObject> it = resource.getAllContents(); it.hasNext(); visited.add(it.next()));
+		return visited;
+	}
+
+	/**
+	 * Registers in the global {@link Registry} all the {@link EPackage}s
+	 * contained in the given {@link Resource}
+	 * 
+	 * @param resource
+	 * @return The <code>nsURI</code> of the first {@link EPackage}
+	 */
+	private static String registerEPackages(Resource resource) {
+		String nsURI = null;
+		for (Iterator<EObject> it = resource.getAllContents(); it.hasNext();) {
+			EObject eObject = it.next();
+			if (eObject instanceof EPackage) {
+				EPackage ePackage = (EPackage) eObject;
+				EPackage.Registry.INSTANCE.put(ePackage.getNsURI(), ePackage);
+				if (nsURI == null) {
+					nsURI = ePackage.getNsURI();
+				}
+			}
+		}
+		return nsURI;
+	}
+
+	/**
+	 * Creates the program options
+	 * 
+	 * @param options
+	 * @return
+	 */
+	private static Options createOptions() {
+
+		Options options = new Options();
+
+		Option inputMetamodelOpt = OptionBuilder.create(INPUT_METAMODEL);
+		inputMetamodelOpt.setLongOpt(INPUT_METAMODEL_LONG);
+		inputMetamodelOpt.setArgName("source.ecore");
+		inputMetamodelOpt.setDescription("Path of the source metamodel file");
+		inputMetamodelOpt.setArgs(1);
+		inputMetamodelOpt.setRequired(true);
+
+		Option inputModelOpt = OptionBuilder.create(INPUT_MODEL);
+		inputModelOpt.setLongOpt(INPUT_MODEL_LONG);
+		inputModelOpt.setArgName("input.xmi");
+		inputModelOpt.setDescription("Path of the input file");
+		inputModelOpt.setArgs(1);
+		inputModelOpt.setRequired(false);
+
+		Option logUnreachableOpt = OptionBuilder.create(LOG_UNREACHABLE);
+		logUnreachableOpt.setLongOpt(LOG_UNREACHABLE_LONG);
+		logUnreachableOpt.setDescription("Log information about unreachable objects");
+		logUnreachableOpt.setArgs(0);
+		logUnreachableOpt.setRequired(false);
+		
+		Option multiSourceOpt = OptionBuilder.create(MULTI_SOURCE);
+		multiSourceOpt.setLongOpt(MULTI_SOURCE_LONG);
+		multiSourceOpt.setDescription("Traverse the model from all the candidate objects at once (one bit lane per object, up to 64 objects per sweep)");
+		multiSourceOpt.setArgs(0);
+		multiSourceOpt.setRequired(false);
+		
+		Option threadsOpt = OptionBuilder.create(THREADS);
+		threadsOpt.setLongOpt(THREADS_LONG);
+		threadsOpt.setArgName("n");
+		threadsOpt.setDescription("Number of threads used to expand each traversal frontier (can not be combined with --" + MULTI_SOURCE_LONG + " or --" + APPROXIMATE_LONG + "); with --" + BATCH_LONG 
+				+ ", number of files analyzed concurrently, each one traversed by a single thread (defaults to 1)");
+		threadsOpt.setType(Number.class);
+		threadsOpt.setArgs(1);
+		threadsOpt.setRequired(false);
+		
+		Option componentsOpt = OptionBuilder.create(COMPONENTS);
+		componentsOpt.setLongOpt(COMPONENTS_LONG);
+		componentsOpt.setDescription("Log information about the weakly and strongly connected components of the model");
+		componentsOpt.setArgs(0);
+		componentsOpt.setRequired(false);
+		
+		Option streamingOpt = OptionBuilder.create(STREAMING);
+		streamingOpt.setLongOpt(STREAMING_LONG);
+		streamingOpt.setDescription("Extract the model graph by streaming the input XMI file, without loading it as EMF objects (references to other files are not followed)");
+		streamingOpt.setArgs(0);
+		streamingOpt.setRequired(false);
+		
+		Option cacheDirOpt = OptionBuilder.create(CACHE_DIR);
+		cacheDirOpt.setLongOpt(CACHE_DIR_LONG);
+		cacheDirOpt.setArgName("dir");
+		cacheDirOpt.setDescription("Directory of the persistent graph cache; models whose graph is already cached are not parsed again");
+		cacheDirOpt.setArgs(1);
+		cacheDirOpt.setRequired(false);
+		
+		Option batchOpt = OptionBuilder.create(BATCH);
+		batchOpt.setLongOpt(BATCH_LONG);
+		batchOpt.setArgName("dir|glob");
+		batchOpt.setDescription("Analyze all the XMI files of a directory (or matching a glob pattern) in this JVM, loading the metamodel only once, and log a consolidated report (replaces --" + INPUT_MODEL_LONG + ")");
+		batchOpt.setArgs(1);
+		batchOpt.setRequired(false);
+		
+		Option rootsOpt = OptionBuilder.create(ROOTS);
+		rootsOpt.setLongOpt(ROOTS_LONG);
+		rootsOpt.setArgName("EClass,...");
+		rootsOpt.setDescription("Comma-separated names of the EClasses whose instances (including instances of their subtypes) are used as traversal roots (defaults to " + Arrays.toString(CANDIDATE_ECLASS_NAMES) + ")");
+		rootsOpt.setArgs(Option.UNLIMITED_VALUES);
+		rootsOpt.setValueSeparator(',');
+		rootsOpt.setRequired(false);
+		
+		Option metricsOpt = OptionBuilder.create(METRICS);
+		metricsOpt.setLongOpt(METRICS_LONG);
+		metricsOpt.setArgName("report.json");
+		metricsOpt.setDescription("Write the time, CPU, allocation, GC and heap measures of every phase to a JSON file");
+		metricsOpt.setArgs(1);
+		metricsOpt.setRequired(false);
+		
+		Option followOpt = OptionBuilder.create(FOLLOW);
+		followOpt.setLongOpt(FOLLOW_LONG);
+		followOpt.setArgName("[EClass.]EReference,...");
+		followOpt.setDescription("Comma-separated names of the only EReferences that are followed (optionally qualified by the name of the EClass declaring them)");
+		followOpt.setArgs(Option.UNLIMITED_VALUES);
+		followOpt.setValueSeparator(',');
+		followOpt.setRequired(false);
+		
+		Option ignoreOpt = OptionBuilder.create(IGNORE);
+		ignoreOpt.setLongOpt(IGNORE_LONG);
+		ignoreOpt.setArgName("[EClass.]EReference,...");
+		ignoreOpt.setDescription("Comma-separated names of EReferences that are not followed (optionally qualified by the name of the EClass declaring them)");
+		ignoreOpt.setArgs(Option.UNLIMITED_VALUES);
+		ignoreOpt.setValueSeparator(',');
+		ignoreOpt.setRequired(false);
+		
+		Option containmentOnlyOpt = OptionBuilder.create(CONTAINMENT_ONLY);
+		containmentOnlyOpt.setLongOpt(CONTAINMENT_ONLY_LONG);
+		containmentOnlyOpt.setDescription("Only follow containment references");
+		containmentOnlyOpt.setArgs(0);
+		containmentOnlyOpt.setRequired(false);
+		
+		Option dominatorsOpt = OptionBuilder.create(DOMINATORS);
+		dominatorsOpt.setLongOpt(DOMINATORS_LONG);
+		dominatorsOpt.setArgName("n");
+		dominatorsOpt.setDescription("Compute the dominator tree of the objects reachable from the candidate objects, and log the n objects with the largest retained size (number of objects only reachable through them)");
+		dominatorsOpt.setType(Number.class);
+		dominatorsOpt.setArgs(1);
+		dominatorsOpt.setRequired(false);
+		
+		Option partitionOpt = OptionBuilder.create(PARTITION);
+		partitionOpt.setLongOpt(PARTITION_LONG);
+		partitionOpt.setArgName("k");
+		partitionOpt.setDescription("Split the input model into k fragments of balanced size, minimizing the references between them, instead of analyzing it");
+		partitionOpt.setType(Number.class);
+		partitionOpt.setArgs(1);
+		partitionOpt.setRequired(false);
+		
+		Option partitionDirOpt = OptionBuilder.create(PARTITION_DIR);
+		partitionDirOpt.setLongOpt(PARTITION_DIR_LONG);
+		partitionDirOpt.setArgName("dir");
+		partitionDirOpt.setDescription("Directory where the fragments of the input model are written (defaults to the directory of the input model)");
+		partitionDirOpt.setArgs(1);
+		partitionDirOpt.setRequired(false);
+		
+		Option lazyOpt = OptionBuilder.create(LAZY);
+		lazyOpt.setLongOpt(LAZY_LONG);
+		lazyOpt.setArgName("n");
+		lazyOpt.setDescription("Follow references to other model files, loading them on demand and keeping at most n of them loaded");
+		lazyOpt.setType(Number.class);
+		lazyOpt.setArgs(1);
+		lazyOpt.setRequired(false);
+		
+		Option offHeapOpt = OptionBuilder.create(OFF_HEAP);
+		offHeapOpt.setLongOpt(OFF_HEAP_LONG);
+		offHeapOpt.setDescription("Store the graph of the input model (in the mapped cache entry, if a cache directory is given) and the queues of its traversals outside of the Java heap");
+		offHeapOpt.setArgs(0);
+		offHeapOpt.setRequired(false);
+		
+		Option unreachableReportOpt = OptionBuilder.create(UNREACHABLE_REPORT);
+		unreachableReportOpt.setLongOpt(UNREACHABLE_REPORT_LONG);
+		unreachableReportOpt.setArgName("file");
+		unreachableReportOpt.setDescription("Write the unreachable objects to a CSV file (or a JSON Lines file, if its extension is .jsonl) instead of logging them; implies -" + LOG_UNREACHABLE);
+		unreachableReportOpt.setArgs(1);
+		unreachableReportOpt.setRequired(false);
+		
+		Option overlapOpt = OptionBuilder.create(OVERLAP);
+		overlapOpt.setLongOpt(OVERLAP_LONG);
+		overlapOpt.setArgName("file");
+		overlapOpt.setDescription("Write the number of objects reachable from each pair of candidate objects to a CSV file, and log the objects reachable from every and from exactly one candidate object");
+		overlapOpt.setArgs(1);
+		overlapOpt.setRequired(false);
+		
+		Option statisticsOpt = OptionBuilder.create(STATISTICS);
+		statisticsOpt.setLongOpt(STATISTICS_LONG);
+		statisticsOpt.setDescription("Log the statistics of the input model (instances per EClass, containment depths, fan-out per EReference and unset features) instead of analyzing it");
+		statisticsOpt.setArgs(0);
+		statisticsOpt.setRequired(false);
+		
+		Option approximateOpt = OptionBuilder.create(APPROXIMATE);
+		approximateOpt.setLongOpt(APPROXIMATE_LONG);
+		approximateOpt.setArgName("error");
+		approximateOpt.setDescription("Estimate the number of objects reachable from the candidate objects with HyperLogLog sketches, with the given relative standard error (e.g., 0.05)");
+		approximateOpt.setType(Number.class);
+		approximateOpt.setArgs(1);
+		approximateOpt.setRequired(false);
+		
+		Option explainOpt = OptionBuilder.create(EXPLAIN);
+		explainOpt.setLongOpt(EXPLAIN_LONG);
+		explainOpt.setArgName("fragment");
+		explainOpt.setDescription("Log the shortest path of references from the closest candidate object to the objects with the given URI fragments");
+		explainOpt.setArgs(Option.UNLIMITED_VALUES);
+		explainOpt.setRequired(false);
+		
+		Option typePruningOpt = OptionBuilder.create(TYPE_PRUNING);
+		typePruningOpt.setLongOpt(TYPE_PRUNING_LONG);
+		typePruningOpt.setDescription("Compute the EClasses that can not be reached from the candidate EClasses through (followed) references, skip the references of their instances, and count them as structurally unreachable (can not be combined with --" + COMPONENTS_LONG + ", --" + PARTITION_LONG + " or --" + STATISTICS_LONG + ")");
+		typePruningOpt.setArgs(0);
+		typePruningOpt.setRequired(false);
+		
+		options.addOption(inputMetamodelOpt);
+		options.addOption(inputModelOpt);
+		options.addOption(logUnreachableOpt);
+		options.addOption(multiSourceOpt);
+		options.addOption(threadsOpt);
+		options.addOption(componentsOpt);
+		options.addOption(streamingOpt);
+		options.addOption(cacheDirOpt);
+		options.addOption(batchOpt);
+		options.addOption(rootsOpt);
+		options.addOption(metricsOpt);
+		options.addOption(followOpt);
+		options.addOption(ignoreOpt);
+		options.addOption(containmentOnlyOpt);
+		options.addOption(dominatorsOpt);
+		options.addOption(partitionOpt);
+		options.addOption(partitionDirOpt);
+		options.addOption(lazyOpt);
+		options.addOption(offHeapOpt);
+		options.addOption(unreachableReportOpt);
+		options.addOption(overlapOpt);
+		options.addOption(statisticsOpt);
+		options.addOption(approximateOpt);
+		options.addOption(explainOpt);
+		options.addOption(typePruningOpt);
+
+		return options;
+	}
+
+}
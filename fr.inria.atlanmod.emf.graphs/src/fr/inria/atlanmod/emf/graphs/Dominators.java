@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.util.Arrays;
+
+/**
+ * Dominator tree of the nodes of a {@link ModelGraph} reachable from a set
+ * of roots, and the retained size of every node. A node <code>d</code>
+ * dominates <code>n</code> if every path from the roots to <code>n</code>
+ * goes through <code>d</code>; the retained size of <code>d</code> is the
+ * number of nodes it dominates (including itself), i.e., the number of
+ * nodes that would become unreachable without <code>d</code>.
+ * <p>
+ * The roots are connected to a virtual root, and immediate dominators are
+ * computed with the iterative algorithm of Cooper, Harvey and Kennedy
+ * ("A Simple, Fast Dominance Algorithm"), over nodes numbered in postorder
+ * and using <code>int</code> arrays only
+ *
+ * @author agomez
+ *
+ */
+public class Dominators {
+
+	/**
+	 * Immediate dominator of the roots, and of the nodes that are only
+	 * dominated by the virtual root (i.e., reachable from several roots
+	 * through disjoint paths)
+	 */
+	public static final int NO_DOMINATOR = -1;
+
+	/**
+	 * Immediate dominator and retained size of unreachable nodes
+	 */
+	private static final int UNREACHABLE = -2;
+
+	private final int[] dominators;
+	private final int[] retainedSizes;
+	private final int reachableCount;
+
+	private Dominators(int[] dominators, int[] retainedSizes, int reachableCount) {
+		this.dominators = dominators;
+		this.retainedSizes = retainedSizes;
+		this.reachableCount = reachableCount;
+	}
+
+	/**
+	 * Computes the dominator tree of the nodes of <code>graph</code> that
+	 * are reachable from <code>roots</code>
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param roots
+	 *            The roots
+	 * @return The {@link Dominators}
+	 */
+	public static Dominators compute(ModelGraph graph, int[] roots) {
+		int size = graph.size();
+		ReverseGraph reverseGraph = graph.getReverseGraph();
+
+		// Number the reachable nodes in postorder with an iterative DFS; the
+		// virtual root gets the last number
+		int[] postorder = new int[size];
+		Arrays.fill(postorder, UNREACHABLE);
+		int[] nodes = new int[size + 1];
+		int count = 0;
+		int[] frameNode = new int[size];
+		int[] frameEdge = new int[size];
+		boolean[] isRoot = new boolean[size];
+		for (int root : roots) {
+			isRoot[root] = true;
+			if (postorder[root] != UNREACHABLE) {
+				continue;
+			}
+			// Nodes are marked as visited with -1 until they are numbered
+			postorder[root] = -1;
+			int frames = 0;
+			frameNode[frames] = root;
+			frameEdge[frames++] = graph.edgeStart(root);
+			while (frames > 0) {
+				int node = frameNode[frames - 1];
+				int edge = frameEdge[frames - 1];
+				if (edge < graph.edgeEnd(node)) {
+					frameEdge[frames - 1]++;
+					int target = graph.target(edge);
+					if (postorder[target] == UNREACHABLE) {
+						postorder[target] = -1;
+						frameNode[frames] = target;
+						frameEdge[frames++] = graph.edgeStart(target);
+					}
+				} else {
+					postorder[node] = count;
+					nodes[count++] = node;
+					frames--;
+				}
+			}
+		}
+		int virtualRoot = count;
+
+		// Immediate dominators, by postorder number
+		int[] idoms = new int[count + 1];
+		Arrays.fill(idoms, -1);
+		idoms[virtualRoot] = virtualRoot;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			// Reverse postorder, skipping the virtual root
+			for (int number = count - 1; number >= 0; number--) {
+				int node = nodes[number];
+				int idom = isRoot[node] ? virtualRoot : -1;
+				for (int edge = reverseGraph.edgeStart(node), end = reverseGraph.edgeEnd(node); edge < end; edge++) {
+					int predecessor = postorder[reverseGraph.source(edge)];
+					if (predecessor >= 0 && idoms[predecessor] != -1) {
+						idom = idom == -1 ? predecessor : intersect(idoms, predecessor, idom);
+					}
+				}
+				if (idoms[number] != idom) {
+					idoms[number] = idom;
+					changed = true;
+				}
+			}
+		}
+
+		// Dominators come after the nodes they dominate in postorder, so
+		// retained sizes are accumulated in a single pass
+		int[] retained = new int[count + 1];
+		Arrays.fill(retained, 1);
+		for (int number = 0; number < count; number++) {
+			retained[idoms[number]] += retained[number];
+		}
+
+		int[] dominators = new int[size];
+		int[] retainedSizes = new int[size];
+		Arrays.fill(dominators, UNREACHABLE);
+		for (int number = 0; number < count; number++) {
+			int node = nodes[number];
+			dominators[node] = idoms[number] == virtualRoot ? NO_DOMINATOR : nodes[idoms[number]];
+			retainedSizes[node] = retained[number];
+		}
+		return new Dominators(dominators, retainedSizes, count);
+	}
+
+	/**
+	 * Returns the common dominator of two nodes (given by postorder number)
+	 * by walking up the dominator tree
+	 */
+	private static int intersect(int[] idoms, int a, int b) {
+		while (a != b) {
+			while (a < b) {
+				a = idoms[a];
+			}
+			while (b < a) {
+				b = idoms[b];
+			}
+		}
+		return a;
+	}
+
+	/**
+	 * @return The number of nodes reachable from the roots
+	 */
+	public int reachableCount() {
+		return reachableCount;
+	}
+
+	/**
+	 * Returns whether <code>node</code> is reachable from the roots
+	 */
+	public boolean isReachable(int node) {
+		return dominators[node] != UNREACHABLE;
+	}
+
+	/**
+	 * Returns the immediate dominator of <code>node</code>, or
+	 * {@link #NO_DOMINATOR} if it is a root, or if it is not dominated by any
+	 * node (or if it is not reachable)
+	 */
+	public int getImmediateDominator(int node) {
+		return dominators[node] >= 0 ? dominators[node] : NO_DOMINATOR;
+	}
+
+	/**
+	 * Returns the retained size of <code>node</code>, i.e., the number of
+	 * nodes it dominates (including itself), or <code>0</code> if it is not
+	 * reachable
+	 */
+	public int getRetainedSize(int node) {
+		return retainedSizes[node];
+	}
+
+	/**
+	 * Returns the <code>n</code> nodes with the largest retained sizes,
+	 * selected with a bounded min-heap
+	 *
+	 * @param n
+	 *            The maximum number of nodes
+	 * @return The nodes, by decreasing retained size
+	 */
+	public int[] getLargestRetainedSizes(int n) {
+		int[] heap = new int[Math.max(0, Math.min(n, reachableCount))];
+		int heapSize = 0;
+		for (int node = 0; node < retainedSizes.length && heap.length > 0; node++) {
+			if (!isReachable(node)) {
+				continue;
+			}
+			if (heapSize < heap.length) {
+				heap[heapSize] = node;
+				siftUp(heap, heapSize++);
+			} else if (retainedSizes[node] > retainedSizes[heap[0]]) {
+				heap[0] = node;
+				siftDown(heap, heapSize, 0);
+			}
+		}
+		// Extract the minimum repeatedly, filling the array from the end
+		for (int last = heapSize - 1; last > 0; last--) {
+			int min = heap[0];
+			heap[0] = heap[last];
+			heap[last] = min;
+			siftDown(heap, last, 0);
+		}
+		return heap;
+	}
+
+	private void siftUp(int[] heap, int i) {
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (retainedSizes[heap[i]] >= retainedSizes[heap[parent]]) {
+				break;
+			}
+			swap(heap, i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int[] heap, int heapSize, int i) {
+		while (true) {
+			int smallest = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < heapSize && retainedSizes[heap[left]] < retainedSizes[heap[smallest]]) {
+				smallest = left;
+			}
+			if (right < heapSize && retainedSizes[heap[right]] < retainedSizes[heap[smallest]]) {
+				smallest = right;
+			}
+			if (smallest == i) {
+				break;
+			}
+			swap(heap, i, smallest);
+			i = smallest;
+		}
+	}
+
+	private static void swap(int[] array, int i, int j) {
+		int tmp = array[i];
+		array[i] = array[j];
+		array[j] = tmp;
+	}
+}
@@ -0,0 +1,443 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+
+/**
+ * On-disk cache of {@link ModelGraph}s. Every entry is a binary file
+ * containing the class ids, the CSR edge arrays (including the feature id
+ * of the {@link org.eclipse.emf.ecore.EReference} of every edge) and the
+ * {@link PositionalIndex} of a graph (plus the offsets of its identifiers,
+ * the {@link URI}s of the nodes whose fragment is not position-based, and
+ * its external {@link URI}s in UTF-8 string tables). The {@link URI}s of
+ * the nodes that are not position-based are the ones computed by EMF (e.g.,
+ * the name-based fragments of Ecore models); graphs of {@link Resource}s
+ * that compute their own fragments have no {@link PositionalIndex}, and
+ * the {@link URI}s of all their nodes are stored instead. Entries are keyed by
+ * the content hash of the model file, the <code>nsURI</code> of its
+ * metamodel and the {@link ReferenceFilter} used to extract the graph, and
+ * are read back by memory-mapping the file, so cached
+ * models are never parsed again. The class ids and edges of a cached graph
+ * can also be left in the mapped file, instead of being copied to the heap.
+ *
+ * @author agomez
+ *
+ */
+public class GraphCache {
+
+	private static final Logger LOG = Logger.getLogger(GraphCache.class.getName());
+
+	private static final int MAGIC = 0x454d4647;
+	private static final int VERSION = 3;
+	private static final String EXTENSION = ".graph";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Maximum number of bytes mapped at once
+	 */
+	private static final int MAX_MAPPING = 1 << 30;
+
+	private final File directory;
+
+	/**
+	 * Creates a new cache
+	 *
+	 * @param directory
+	 *            The directory where the entries are stored; it is created
+	 *            if it does not exist
+	 */
+	public GraphCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Computes the cache key of the graph of a model file built from its
+	 * {@link org.eclipse.emf.ecore.resource.Resource}
+	 *
+	 * @param modelFile
+	 *            The model file
+	 * @param nsURI
+	 *            The <code>nsURI</code> of the metamodel
+	 * @return The key, as an hexadecimal string
+	 * @throws IOException
+	 *             If the file can not be read
+	 */
+	public static String key(File modelFile, String nsURI) throws IOException {
+		return key(modelFile, nsURI, false, null);
+	}
+
+	/**
+	 * Computes the cache key of the graph of a model file extracted with a
+	 * {@link ReferenceFilter}. The way the graph is extracted is part of the
+	 * key, since streamed graphs do not include the edges of the objects of
+	 * other files
+	 *
+	 * @param modelFile
+	 *            The model file
+	 * @param nsURI
+	 *            The <code>nsURI</code> of the metamodel
+	 * @param streaming
+	 *            Whether the graph is extracted by a
+	 *            {@link StreamingGraphLoader}
+	 * @param filter
+	 *            The {@link ReferenceFilter}, or <code>null</code> if all the
+	 *            references are recorded
+	 * @return The key, as an hexadecimal string
+	 * @throws IOException
+	 *             If the file can not be read
+	 */
+	public static String key(File modelFile, String nsURI, boolean streaming, ReferenceFilter filter) throws IOException {
+		MessageDigest digest = newDigest();
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream inputStream = new FileInputStream(modelFile)) {
+			for (int read; (read = inputStream.read(buffer)) != -1;) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		digest.update((byte) 0);
+		digest.update(nsURI.getBytes(UTF8));
+		digest.update((byte) 0);
+		digest.update((byte) (streaming ? 1 : 0));
+		if (filter != null) {
+			digest.update((byte) 0);
+			digest.update(filter.toString().getBytes(UTF8));
+		}
+		StringBuilder builder = new StringBuilder();
+		for (byte b : digest.digest()) {
+			builder.append(String.format("%02x", b & 0xff));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Loads the cached graph with the given key
+	 *
+	 * @param key
+	 *            The key computed by {@link #key(File, String, boolean, ReferenceFilter)}
+	 * @param uri
+	 *            The {@link URI} of the model
+	 * @param nsURI
+	 *            The <code>nsURI</code> of the metamodel
+	 * @return The cached {@link ModelGraph}, or <code>null</code> if there is
+	 *         no (valid) entry for <code>key</code>
+	 * @throws IOException
+	 *             If the entry can not be read
+	 */
+	public ModelGraph load(String key, URI uri, String nsURI) throws IOException {
+		return load(key, uri, nsURI, false);
+	}
+
+	/**
+	 * Loads the cached graph with the given key, optionally keeping its class
+	 * ids and edges in the mapped file, outside of the Java heap
+	 *
+	 * @param key
+	 *            The key computed by {@link #key(File, String, boolean, ReferenceFilter)}
+	 * @param uri
+	 *            The {@link URI} of the model
+	 * @param nsURI
+	 *            The <code>nsURI</code> of the metamodel
+	 * @param offHeap
+	 *            Whether the class ids and edges are read from the mapped
+	 *            file on every access instead of being copied to the heap
+	 * @return The cached {@link ModelGraph}, or <code>null</code> if there is
+	 *         no (valid) entry for <code>key</code>
+	 * @throws IOException
+	 *             If the entry can not be read
+	 */
+	public ModelGraph load(String key, URI uri, String nsURI, boolean offHeap) throws IOException {
+		File file = new File(directory, key + EXTENSION);
+		if (!file.isFile()) {
+			return null;
+		}
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r"); FileChannel channel = randomAccessFile.getChannel()) {
+			Reader reader = new Reader(channel);
+			if (reader.readInt() != MAGIC || reader.readInt() != VERSION || !nsURI.equals(reader.readString())) {
+				LOG.log(Level.WARNING, MessageFormat.format("Ignoring invalid cache entry {0}", file));
+				return null;
+			}
+			int size = reader.readInt();
+			int resourceSize = reader.readInt();
+			String[] eClassNames = reader.readStrings();
+			EClass[] eClasses = new EClass[eClassNames.length];
+			for (int i = 0; i < eClassNames.length; i++) {
+				eClasses[i] = getEClass(eClassNames[i]);
+				if (eClasses[i] == null) {
+					LOG.log(Level.WARNING, MessageFormat.format("Ignoring cache entry {0}: unknown EClass {1}", file, eClassNames[i]));
+					return null;
+				}
+			}
+			IntArray classIds = reader.readIntArray(size, offHeap);
+			IntArray edgeOffsets = reader.readIntArray(size + 1, offHeap);
+			IntArray crossOffsets = reader.readIntArray(size, offHeap);
+			int edgeCount = reader.readInt();
+			IntArray targets = reader.readIntArray(edgeCount, offHeap);
+			IntArray edgeFeatureIds = reader.readIntArray(edgeCount, offHeap);
+			PositionalIndex positionalIndex = null;
+			if (reader.readInt() != 0) {
+				int[] containers = reader.readInts(resourceSize);
+				int[] features = reader.readInts(resourceSize);
+				int[] positions = reader.readInts(resourceSize);
+				String[] featureNames = reader.readStrings();
+				int rootCount = reader.readInt();
+				String[] ids = reader.readStringTable();
+				positionalIndex = new PositionalIndex(containers, features, positions, featureNames, rootCount, ids);
+			}
+			String[] customURIs = reader.readStringTable();
+			String[] externalURIs = reader.readStringTable();
+			return new ModelGraph(uri, resourceSize, classIds, eClasses, edgeOffsets, crossOffsets, targets, edgeFeatureIds, positionalIndex, customURIs,
+					externalURIs);
+		}
+	}
+
+	/**
+	 * Stores <code>graph</code> with the given key
+	 *
+	 * @param key
+	 *            The key computed by {@link #key(File, String, boolean, ReferenceFilter)}
+	 * @param nsURI
+	 *            The <code>nsURI</code> of the metamodel
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @throws IOException
+	 *             If the entry can not be written
+	 */
+	public void store(String key, String nsURI, ModelGraph graph) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException(MessageFormat.format("Unable to create cache directory {0}", directory));
+		}
+		int size = graph.size();
+		int resourceSize = graph.resourceSize();
+		PositionalIndex positionalIndex = graph.getPositionalIndex();
+		File temporaryFile = File.createTempFile(key, EXTENSION, directory);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, nsURI);
+			out.writeInt(size);
+			out.writeInt(resourceSize);
+			out.writeInt(graph.classCount());
+			for (int classId = 0; classId < graph.classCount(); classId++) {
+				EClass eClass = graph.getClass(classId);
+				writeString(out, eClass.getEPackage().getNsURI() + "#" + eClass.getName());
+			}
+			for (int node = 0; node < size; node++) {
+				out.writeInt(graph.getClassId(node));
+			}
+			for (int node = 0; node <= size; node++) {
+				out.writeInt(node < size ? graph.edgeStart(node) : graph.edgeCount());
+			}
+			for (int node = 0; node < size; node++) {
+				out.writeInt(graph.crossStart(node));
+			}
+			out.writeInt(graph.edgeCount());
+			for (int edge = 0; edge < graph.edgeCount(); edge++) {
+				out.writeInt(graph.target(edge));
+			}
+			for (int edge = 0; edge < graph.edgeCount(); edge++) {
+				out.writeInt(graph.getFeatureId(edge));
+			}
+			out.writeInt(positionalIndex != null ? 1 : 0);
+			if (positionalIndex != null) {
+				for (int node = 0; node < resourceSize; node++) {
+					out.writeInt(positionalIndex.getContainer(node));
+				}
+				for (int node = 0; node < resourceSize; node++) {
+					out.writeInt(positionalIndex.getFeature(node));
+				}
+				for (int node = 0; node < resourceSize; node++) {
+					out.writeInt(positionalIndex.getPosition(node));
+				}
+				out.writeInt(positionalIndex.getFeatureCount());
+				for (int feature = 0; feature < positionalIndex.getFeatureCount(); feature++) {
+					writeString(out, positionalIndex.getFeatureName(feature));
+				}
+				out.writeInt(positionalIndex.getRootCount());
+				String[] ids = new String[resourceSize];
+				for (int node = 0; node < resourceSize; node++) {
+					ids[node] = positionalIndex.getId(node);
+				}
+				writeStringTable(out, ids);
+			}
+			// Nodes of the resource are written as fragments, so that they
+			// follow the model file if it is moved
+			String[] customURIs = new String[resourceSize];
+			for (int node = 0; node < resourceSize; node++) {
+				if (!graph.hasPositionalURI(node)) {
+					URI nodeURI = graph.getURI(node);
+					customURIs[node] = graph.getURI().equals(nodeURI.trimFragment()) ? "#" + nodeURI.fragment() : nodeURI.toString();
+				}
+			}
+			writeStringTable(out, customURIs);
+			String[] externalURIs = new String[size - resourceSize];
+			for (int node = resourceSize; node < size; node++) {
+				externalURIs[node - resourceSize] = graph.getURI(node).toString();
+			}
+			writeStringTable(out, externalURIs);
+		}
+		Files.move(temporaryFile.toPath(), new File(directory, key + EXTENSION).toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static EClass getEClass(String qualifiedName) {
+		int hash = qualifiedName.lastIndexOf('#');
+		EPackage ePackage = EPackage.Registry.INSTANCE.getEPackage(qualifiedName.substring(0, hash));
+		EClassifier eClassifier = ePackage != null ? ePackage.getEClassifier(qualifiedName.substring(hash + 1)) : null;
+		return eClassifier instanceof EClass ? (EClass) eClassifier : null;
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Writes the given strings as an array of <code>length + 1</code> offsets
+	 * followed by the UTF-8 bytes of all the strings; <code>null</code>
+	 * strings are written as empty strings
+	 */
+	private static void writeStringTable(DataOutputStream out, String[] strings) throws IOException {
+		byte[][] bytes = new byte[strings.length][];
+		int offset = 0;
+		out.writeInt(strings.length);
+		out.writeInt(offset);
+		for (int i = 0; i < strings.length; i++) {
+			bytes[i] = strings[i] != null ? strings[i].getBytes(UTF8) : new byte[0];
+			offset += bytes[i].length;
+			out.writeInt(offset);
+		}
+		for (byte[] string : bytes) {
+			out.write(string);
+		}
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Sequential reader of a memory-mapped cache entry
+	 */
+	private static class Reader {
+
+		private final FileChannel channel;
+		private long position;
+
+		private Reader(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		private ByteBuffer map(long length) throws IOException {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			position += length;
+			return buffer;
+		}
+
+		private int readInt() throws IOException {
+			return map(4).getInt();
+		}
+
+		private int[] readInts(int count) throws IOException {
+			int[] ints = new int[count];
+			for (int offset = 0; offset < count;) {
+				int length = Math.min(count - offset, MAX_MAPPING / 4);
+				map(length * 4L).asIntBuffer().get(ints, offset, length);
+				offset += length;
+			}
+			return ints;
+		}
+
+		/**
+		 * Reads <code>count</code> ints either into the heap or as a mapped
+		 * {@link IntArray}
+		 */
+		private IntArray readIntArray(int count, boolean offHeap) throws IOException {
+			if (!offHeap) {
+				return IntArray.wrap(readInts(count));
+			}
+			IntArray ints = IntArray.map(channel, position, count);
+			position += count * 4L;
+			return ints;
+		}
+
+		private String readString() throws IOException {
+			int length = readInt();
+			byte[] bytes = new byte[length];
+			map(length).get(bytes);
+			return new String(bytes, UTF8);
+		}
+
+		private String[] readStrings() throws IOException {
+			String[] strings = new String[readInt()];
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = readString();
+			}
+			return strings;
+		}
+
+		/**
+		 * Reads a table written by
+		 * {@link GraphCache#writeStringTable(DataOutputStream, String[])}
+		 *
+		 * @return The strings, or <code>null</code> if all of them are empty
+		 */
+		private String[] readStringTable() throws IOException {
+			int[] offsets = readInts(readInt() + 1);
+			int length = offsets[offsets.length - 1];
+			if (length == 0 && offsets.length > 1) {
+				return null;
+			}
+			String[] strings = new String[offsets.length - 1];
+			ByteBuffer buffer = map(length);
+			byte[] bytes = new byte[0];
+			for (int i = 0; i < strings.length; i++) {
+				int stringLength = offsets[i + 1] - offsets[i];
+				if (stringLength > 0) {
+					if (bytes.length < stringLength) {
+						bytes = new byte[stringLength];
+					}
+					buffer.get(bytes, 0, stringLength);
+					strings[i] = new String(bytes, 0, stringLength, UTF8);
+				}
+			}
+			return strings;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+/**
+ * Open-addressing identity map from objects to non-negative <code>int</code>
+ * values. Unlike {@link java.util.IdentityHashMap}, values are not boxed and
+ * no entry objects are allocated
+ *
+ * @author agomez
+ *
+ */
+final class IdentityIntMap<K> {
+
+	static final int NO_VALUE = -1;
+
+	private Object[] keys;
+	private int[] values;
+	private int size;
+
+	IdentityIntMap(int expectedSize) {
+		int capacity = 16;
+		while (capacity < expectedSize * 2 && capacity < (1 << 30)) {
+			capacity <<= 1;
+		}
+		keys = new Object[capacity];
+		values = new int[capacity];
+	}
+
+	/**
+	 * Returns the value associated to <code>key</code>, or {@link #NO_VALUE}
+	 * if the key is not in the map
+	 */
+	int get(K key) {
+		int mask = keys.length - 1;
+		for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+			Object candidate = keys[i];
+			if (candidate == key) {
+				return values[i];
+			} else if (candidate == null) {
+				return NO_VALUE;
+			}
+		}
+	}
+
+	/**
+	 * Associates <code>value</code> to <code>key</code>, replacing any
+	 * previous value
+	 */
+	void put(K key, int value) {
+		if ((size + 1) * 2 > keys.length) {
+			resize();
+		}
+		int mask = keys.length - 1;
+		for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+			Object candidate = keys[i];
+			if (candidate == key) {
+				values[i] = value;
+				return;
+			} else if (candidate == null) {
+				keys[i] = key;
+				values[i] = value;
+				size++;
+				return;
+			}
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	private void resize() {
+		Object[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new Object[oldKeys.length * 2];
+		values = new int[oldValues.length * 2];
+		int mask = keys.length - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			Object key = oldKeys[j];
+			if (key != null) {
+				int i = hash(key) & mask;
+				while (keys[i] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = key;
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	private static int hash(Object key) {
+		int h = System.identityHashCode(key);
+		// Spread the bits, identity hash codes are poorly distributed in the low bits
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return h;
+	}
+}
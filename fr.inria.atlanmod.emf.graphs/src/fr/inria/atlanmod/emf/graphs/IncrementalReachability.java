@@ -0,0 +1,461 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.ECrossReferenceAdapter;
+
+/**
+ * Reachability index of a {@link Resource} that is kept up to date while
+ * the model is edited. The index is an {@link ECrossReferenceAdapter}
+ * attached to the {@link Resource}, and maintains the set of
+ * {@link EObject}s reachable from every registered root, following the same
+ * edges as a {@link ModelGraph} ({@link EObject#eContents()} and
+ * {@link EObject#eCrossReferences()}).
+ * <p>
+ * When an edge is added from a reachable {@link EObject}, its target is
+ * propagated forward, visiting only the newly reachable {@link EObject}s.
+ * When an edge is removed, the {@link EObject}s reachable from its target
+ * are tentatively deleted from the set, and those that still have a
+ * predecessor in the set (found through the inverse references recorded by
+ * the adapter) are derived again. Only the part of the model reachable from
+ * the modified edge is visited, instead of the whole model.
+ * <p>
+ * {@link EObject}s are numbered in order of first appearance; numbers are
+ * not recycled when {@link EObject}s are deleted.
+ *
+ * @author agomez
+ *
+ */
+public class IncrementalReachability extends ECrossReferenceAdapter {
+
+	private final Resource resource;
+	private final IdentityIntMap<EObject> ids = new IdentityIntMap<>(1024);
+	private EObject[] eObjects = new EObject[1024];
+	private int size;
+	/**
+	 * Number of roots from which every node is reachable
+	 */
+	private int[] rootCounts = new int[1024];
+	private final List<RootState> roots = new ArrayList<>();
+
+	/**
+	 * Creates a new index and attaches it to <code>resource</code>. Roots
+	 * must be registered with {@link #addRoot(EObject)}
+	 *
+	 * @param resource
+	 *            The {@link Resource}
+	 */
+	public IncrementalReachability(Resource resource) {
+		this.resource = resource;
+		resource.eAdapters().add(this);
+	}
+
+	/**
+	 * Detaches this index from its {@link Resource}
+	 */
+	public void dispose() {
+		resource.eAdapters().remove(this);
+	}
+
+	/**
+	 * Registers <code>root</code> and computes the set of {@link EObject}s
+	 * reachable from it
+	 *
+	 * @param root
+	 *            The root {@link EObject}
+	 */
+	public void addRoot(EObject root) {
+		if (findRoot(root) == null) {
+			RootState state = new RootState(idOf(root));
+			roots.add(state);
+			state.add(state.root);
+			propagate(state, new int[] { state.root }, 1);
+		}
+	}
+
+	/**
+	 * Unregisters <code>root</code>
+	 *
+	 * @param root
+	 *            The root {@link EObject}
+	 */
+	public void removeRoot(EObject root) {
+		RootState state = findRoot(root);
+		if (state != null) {
+			BitSet reachable = state.reachable;
+			for (int node = reachable.nextSetBit(0); node >= 0; node = reachable.nextSetBit(node + 1)) {
+				rootCounts[node]--;
+			}
+			roots.remove(state);
+		}
+	}
+
+	/**
+	 * @return The registered roots
+	 */
+	public List<EObject> getRoots() {
+		List<EObject> result = new ArrayList<>(roots.size());
+		for (RootState state : roots) {
+			result.add(eObjects[state.root]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns whether <code>eObject</code> is reachable from the registered
+	 * root <code>root</code>
+	 */
+	public boolean isReachable(EObject root, EObject eObject) {
+		int node = ids.get(eObject);
+		return node != IdentityIntMap.NO_VALUE && getRoot(root).reachable.get(node);
+	}
+
+	/**
+	 * Returns the number of {@link EObject}s reachable from the registered
+	 * root <code>root</code> (including <code>root</code> itself)
+	 */
+	public int getReachableCount(EObject root) {
+		return getRoot(root).count;
+	}
+
+	/**
+	 * Returns the {@link EObject}s reachable from the registered root
+	 * <code>root</code>
+	 *
+	 * @param root
+	 *            The root {@link EObject}
+	 * @return A new {@link Set} of {@link EObject}s
+	 */
+	public Set<EObject> getReachableEObjects(EObject root) {
+		RootState state = getRoot(root);
+		Set<EObject> result = new LinkedHashSet<>();
+		for (int node = state.reachable.nextSetBit(0); node >= 0; node = state.reachable.nextSetBit(node + 1)) {
+			result.add(eObjects[node]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns whether <code>eObject</code> is not reachable from any of the
+	 * registered roots
+	 */
+	public boolean isUnreachable(EObject eObject) {
+		int node = ids.get(eObject);
+		return node == IdentityIntMap.NO_VALUE || rootCounts[node] == 0;
+	}
+
+	/**
+	 * Returns an {@link Iterable} over the {@link EObject}s of the
+	 * {@link Resource} that are not reachable from any of the registered
+	 * roots, in {@link Resource#getAllContents()} order. Reachability is
+	 * looked up in the index, so no traversal is needed
+	 *
+	 * @return The unreachable {@link EObject}s
+	 */
+	public Iterable<EObject> unreachableEObjects() {
+		return new Iterable<EObject>() {
+			@Override
+			public Iterator<EObject> iterator() {
+				return new Iterator<EObject>() {
+					private final Iterator<EObject> contents = resource.getAllContents();
+					private EObject next = advance();
+
+					private EObject advance() {
+						while (contents.hasNext()) {
+							EObject eObject = contents.next();
+							if (isUnreachable(eObject)) {
+								return eObject;
+							}
+						}
+						return null;
+					}
+
+					@Override
+					public boolean hasNext() {
+						return next != null;
+					}
+
+					@Override
+					public EObject next() {
+						if (next == null) {
+							throw new NoSuchElementException();
+						}
+						EObject result = next;
+						next = advance();
+						return result;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	@Override
+	public void notifyChanged(Notification notification) {
+		super.notifyChanged(notification);
+		if (roots.isEmpty() || notification.isTouch() || !(notification.getNotifier() instanceof EObject)
+				|| !(notification.getFeature() instanceof EReference) || ((EReference) notification.getFeature()).isContainer()) {
+			return;
+		}
+		EObject source = (EObject) notification.getNotifier();
+		switch (notification.getEventType()) {
+		case Notification.SET:
+		case Notification.UNSET:
+			edgesRemoved(source, singleton(notification.getOldValue()));
+			edgesAdded(source, singleton(notification.getNewValue()));
+			break;
+		case Notification.ADD:
+			edgesAdded(source, singleton(notification.getNewValue()));
+			break;
+		case Notification.ADD_MANY:
+			edgesAdded(source, (Collection<?>) notification.getNewValue());
+			break;
+		case Notification.REMOVE:
+			edgesRemoved(source, singleton(notification.getOldValue()));
+			break;
+		case Notification.REMOVE_MANY:
+			edgesRemoved(source, (Collection<?>) notification.getOldValue());
+			break;
+		default:
+			// Moves do not change the edges, and resolved proxies are
+			// followed by the traversals themselves
+			break;
+		}
+	}
+
+	private static Collection<?> singleton(Object value) {
+		return value != null ? Collections.singleton(value) : Collections.emptySet();
+	}
+
+	/**
+	 * Propagates forward the targets of the edges added to
+	 * <code>source</code>, for every root that reaches <code>source</code>
+	 */
+	private void edgesAdded(EObject source, Collection<?> targets) {
+		int sourceNode = ids.get(source);
+		if (sourceNode == IdentityIntMap.NO_VALUE) {
+			return;
+		}
+		for (RootState state : roots) {
+			if (state.reachable.get(sourceNode)) {
+				int[] seeds = new int[targets.size()];
+				int count = 0;
+				for (Object target : targets) {
+					if (target instanceof EObject) {
+						int targetNode = idOf((EObject) target);
+						if (!state.reachable.get(targetNode)) {
+							state.add(targetNode);
+							seeds[count++] = targetNode;
+						}
+					}
+				}
+				propagate(state, seeds, count);
+			}
+		}
+	}
+
+	/**
+	 * Re-verifies, for every root that reaches <code>source</code>, the
+	 * nodes that may no longer be reachable after removing the edges to
+	 * <code>targets</code>
+	 */
+	private void edgesRemoved(EObject source, Collection<?> targets) {
+		int sourceNode = ids.get(source);
+		if (sourceNode == IdentityIntMap.NO_VALUE) {
+			return;
+		}
+		for (RootState state : roots) {
+			if (state.reachable.get(sourceNode)) {
+				for (Object target : targets) {
+					int targetNode = target instanceof EObject ? ids.get((EObject) target) : IdentityIntMap.NO_VALUE;
+					if (targetNode != IdentityIntMap.NO_VALUE && state.reachable.get(targetNode)) {
+						rederive(state, overdelete(state, targetNode));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds to the reachable set of <code>state</code> every node reachable
+	 * from <code>seeds</code> (which must be already in the set)
+	 */
+	private void propagate(RootState state, int[] seeds, int count) {
+		IntList stack = new IntList(Math.max(count, 16));
+		for (int i = 0; i < count; i++) {
+			stack.add(seeds[i]);
+		}
+		while (!stack.isEmpty()) {
+			int node = stack.get(stack.size() - 1);
+			stack.truncate(stack.size() - 1);
+			EObject eObject = eObjects[node];
+			for (EObject target : eObject.eContents()) {
+				int targetNode = idOf(target);
+				if (!state.reachable.get(targetNode)) {
+					state.add(targetNode);
+					stack.add(targetNode);
+				}
+			}
+			for (EObject target : eObject.eCrossReferences()) {
+				int targetNode = idOf(target);
+				if (!state.reachable.get(targetNode)) {
+					state.add(targetNode);
+					stack.add(targetNode);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes from the reachable set of <code>state</code> the nodes that
+	 * are still reachable from <code>node</code>. These are all the nodes
+	 * that may have been reachable only through the removed edge
+	 *
+	 * @return The removed nodes
+	 */
+	private IntList overdelete(RootState state, int node) {
+		IntList deleted = new IntList();
+		state.remove(node);
+		deleted.add(node);
+		for (int i = 0; i < deleted.size(); i++) {
+			EObject eObject = eObjects[deleted.get(i)];
+			for (EObject target : eObject.eContents()) {
+				int targetNode = ids.get(target);
+				if (targetNode != IdentityIntMap.NO_VALUE && state.reachable.get(targetNode)) {
+					state.remove(targetNode);
+					deleted.add(targetNode);
+				}
+			}
+			for (EObject target : eObject.eCrossReferences()) {
+				int targetNode = ids.get(target);
+				if (targetNode != IdentityIntMap.NO_VALUE && state.reachable.get(targetNode)) {
+					state.remove(targetNode);
+					deleted.add(targetNode);
+				}
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * Adds back to the reachable set of <code>state</code> the
+	 * <code>deleted</code> nodes that are the root or have a predecessor in
+	 * the set, and the nodes reachable from them
+	 */
+	private void rederive(RootState state, IntList deleted) {
+		int[] seeds = new int[deleted.size()];
+		int count = 0;
+		for (int i = 0; i < deleted.size(); i++) {
+			int node = deleted.get(i);
+			if (node == state.root || hasReachablePredecessor(state, eObjects[node])) {
+				state.add(node);
+				seeds[count++] = node;
+			}
+		}
+		propagate(state, seeds, count);
+	}
+
+	private boolean hasReachablePredecessor(RootState state, EObject eObject) {
+		for (EStructuralFeature.Setting setting : getInverseReferences(eObject, false)) {
+			EStructuralFeature feature = setting.getEStructuralFeature();
+			// Settings of container references are not edges
+			if (feature instanceof EReference && !((EReference) feature).isContainer()) {
+				int node = ids.get(setting.getEObject());
+				if (node != IdentityIntMap.NO_VALUE && state.reachable.get(node)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private RootState findRoot(EObject root) {
+		int node = ids.get(root);
+		for (RootState state : roots) {
+			if (state.root == node) {
+				return state;
+			}
+		}
+		return null;
+	}
+
+	private RootState getRoot(EObject root) {
+		RootState state = findRoot(root);
+		if (state == null) {
+			throw new IllegalArgumentException("Not a registered root: " + root);
+		}
+		return state;
+	}
+
+	/**
+	 * Returns the node number of <code>eObject</code>, numbering it if it
+	 * has not been seen yet
+	 */
+	private int idOf(EObject eObject) {
+		int id = ids.get(eObject);
+		if (id == IdentityIntMap.NO_VALUE) {
+			if (size == eObjects.length) {
+				eObjects = Arrays.copyOf(eObjects, size * 2);
+				rootCounts = Arrays.copyOf(rootCounts, size * 2);
+			}
+			id = size++;
+			ids.put(eObject, id);
+			eObjects[id] = eObject;
+		}
+		return id;
+	}
+
+	/**
+	 * Reachable set of a root
+	 */
+	private class RootState {
+
+		private final int root;
+		private final BitSet reachable = new BitSet();
+		private int count;
+
+		private RootState(int root) {
+			this.root = root;
+		}
+
+		private void add(int node) {
+			reachable.set(node);
+			rootCounts[node]++;
+			count++;
+		}
+
+		private void remove(int node) {
+			reachable.clear(node);
+			rootCounts[node]--;
+			count--;
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Fixed-length array of <code>int</code>s, stored either in the Java heap
+ * or outside of it, in direct or memory-mapped {@link ByteBuffer}s. Arrays
+ * outside of the heap are split in chunks of at most 2<sup>28</sup>
+ * <code>int</code>s (1 GB), since a single buffer can not hold more than
+ * 2 GB
+ *
+ * @author agomez
+ *
+ */
+abstract class IntArray {
+
+	private static final int CHUNK_SHIFT = 28;
+	private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+	abstract int get(int index);
+
+	abstract void set(int index, int value);
+
+	abstract int length();
+
+	/**
+	 * Returns whether this array is stored outside of the Java heap
+	 */
+	abstract boolean isOffHeap();
+
+	/**
+	 * Returns an array backed by <code>array</code>
+	 */
+	static IntArray wrap(int[] array) {
+		return new HeapIntArray(array);
+	}
+
+	/**
+	 * Allocates a zero-filled array, either in the heap or in direct
+	 * {@link ByteBuffer}s
+	 */
+	static IntArray allocate(int length, boolean offHeap) {
+		if (!offHeap) {
+			return new HeapIntArray(new int[length]);
+		}
+		IntBuffer[] chunks = new IntBuffer[chunkCount(length)];
+		for (int chunk = 0; chunk < chunks.length; chunk++) {
+			int chunkLength = Math.min(length - (chunk << CHUNK_SHIFT), 1 << CHUNK_SHIFT);
+			chunks[chunk] = ByteBuffer.allocateDirect(chunkLength * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+		}
+		return new BufferIntArray(chunks, length);
+	}
+
+	/**
+	 * Copies <code>array</code> into a new array allocated in direct
+	 * {@link ByteBuffer}s
+	 */
+	static IntArray allocateDirect(IntArray array) {
+		IntArray copy = allocate(array.length(), true);
+		for (int index = 0, length = array.length(); index < length; index++) {
+			copy.set(index, array.get(index));
+		}
+		return copy;
+	}
+
+	/**
+	 * Maps <code>length</code> big-endian <code>int</code>s of a file,
+	 * read-only. The mapping remains valid after <code>channel</code> is
+	 * closed
+	 *
+	 * @param channel
+	 *            The {@link FileChannel} of the file
+	 * @param position
+	 *            The position of the first <code>int</code> in the file
+	 * @param length
+	 *            The number of <code>int</code>s
+	 * @return The mapped array
+	 * @throws IOException
+	 *             If the file can not be mapped
+	 */
+	static IntArray map(FileChannel channel, long position, int length) throws IOException {
+		IntBuffer[] chunks = new IntBuffer[chunkCount(length)];
+		for (int chunk = 0; chunk < chunks.length; chunk++) {
+			int chunkLength = Math.min(length - (chunk << CHUNK_SHIFT), 1 << CHUNK_SHIFT);
+			chunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, position + ((long) chunk << CHUNK_SHIFT) * 4, chunkLength * 4L).asIntBuffer();
+		}
+		return new BufferIntArray(chunks, length);
+	}
+
+	private static int chunkCount(int length) {
+		return (int) (((long) length + CHUNK_MASK) >>> CHUNK_SHIFT);
+	}
+
+	private static final class HeapIntArray extends IntArray {
+
+		private final int[] array;
+
+		private HeapIntArray(int[] array) {
+			this.array = array;
+		}
+
+		@Override
+		int get(int index) {
+			return array[index];
+		}
+
+		@Override
+		void set(int index, int value) {
+			array[index] = value;
+		}
+
+		@Override
+		int length() {
+			return array.length;
+		}
+
+		@Override
+		boolean isOffHeap() {
+			return false;
+		}
+	}
+
+	private static final class BufferIntArray extends IntArray {
+
+		private final IntBuffer[] chunks;
+		private final int length;
+
+		private BufferIntArray(IntBuffer[] chunks, int length) {
+			this.chunks = chunks;
+			this.length = length;
+		}
+
+		@Override
+		int get(int index) {
+			return chunks[index >>> CHUNK_SHIFT].get(index & CHUNK_MASK);
+		}
+
+		@Override
+		void set(int index, int value) {
+			chunks[index >>> CHUNK_SHIFT].put(index & CHUNK_MASK, value);
+		}
+
+		@Override
+		int length() {
+			return length;
+		}
+
+		@Override
+		boolean isOffHeap() {
+			return true;
+		}
+	}
+}
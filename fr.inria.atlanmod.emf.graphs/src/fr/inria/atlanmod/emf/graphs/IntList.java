@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive <code>int</code>s, used to build the compact
+ * array-based structures without boxing
+ *
+ * @author agomez
+ *
+ */
+final class IntList {
+
+	private int[] elements;
+	private int size;
+
+	IntList() {
+		this(16);
+	}
+
+	IntList(int initialCapacity) {
+		elements = new int[Math.max(initialCapacity, 1)];
+	}
+
+	void add(int value) {
+		if (size == elements.length) {
+			elements = Arrays.copyOf(elements, newCapacity(size + 1));
+		}
+		elements[size++] = value;
+	}
+
+	int get(int index) {
+		return elements[index];
+	}
+
+	void set(int index, int value) {
+		elements[index] = value;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Discards the elements at positions <code>newSize</code> and beyond
+	 */
+	void truncate(int newSize) {
+		size = Math.min(size, newSize);
+	}
+
+	/**
+	 * Returns an array containing exactly the elements of this list
+	 *
+	 * @return The trimmed array
+	 */
+	int[] toArray() {
+		return Arrays.copyOf(elements, size);
+	}
+
+	private int newCapacity(int minCapacity) {
+		int capacity = elements.length + (elements.length >> 1) + 1;
+		if (capacity < minCapacity || capacity < 0) {
+			capacity = minCapacity;
+		}
+		return capacity;
+	}
+}
@@ -0,0 +1,391 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.InternalEList;
+
+/**
+ * Reachability over a set of model files that reference each other, which
+ * may not fit in memory at once. References are followed without resolving
+ * proxies: the {@link URI} of every reached object is recorded instead, and
+ * the {@link Resource} it belongs to is loaded on demand. At most a given
+ * number of {@link Resource}s are kept loaded, unloading the least recently
+ * used one when another one is needed.
+ * <p>
+ * Visited objects are kept as sets of URI fragments per {@link Resource},
+ * so that no {@link EObject} is retained between loads. An object may be
+ * referenced through several fragments (e.g., its identifier and its
+ * position), and its {@link Resource} through several {@link URI}s, so
+ * {@link URI}s are normalized and every object is recorded by the canonical
+ * fragment of its {@link PositionalIndex} once it is loaded; the fragments
+ * of the references are also recorded, so that they are not requested
+ * again. Pending objects are
+ * also grouped by {@link Resource}, and loaded {@link Resource}s are drained
+ * first, to minimize the number of times every {@link Resource} is loaded
+ *
+ * @author agomez
+ *
+ */
+public class LazyReachability {
+
+	private static final Logger LOG = Logger.getLogger(LazyReachability.class.getName());
+
+	private final ResourceSet resourceSet;
+	private final int maxLoadedResources;
+	private final ReferenceFilter filter;
+
+	/**
+	 * Loaded {@link Resource}s, from the least to the most recently used
+	 */
+	private final LinkedHashMap<URI, Resource> loadedResources = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<Resource, FragmentIndex> fragmentIndexes = new HashMap<>();
+	/**
+	 * Fragments of every {@link Resource}: canonical fragments of visited
+	 * objects (<code>true</code>), and fragments that have been requested
+	 * but are not canonical, or are pending, or could not be resolved
+	 * (<code>false</code>)
+	 */
+	private final Map<URI, Map<String, Boolean>> visited = new HashMap<>();
+	private final Set<URI> missingResources = new HashSet<>();
+	private int visitedCount;
+	private int unresolvedCount;
+	private int loadCount;
+
+	/**
+	 * Creates a lazy traversal over the {@link Resource}s of
+	 * <code>resourceSet</code>
+	 *
+	 * @param resourceSet
+	 *            The {@link ResourceSet} where {@link Resource}s are loaded
+	 * @param maxLoadedResources
+	 *            The maximum number of {@link Resource}s kept loaded
+	 * @param filter
+	 *            The {@link ReferenceFilter}, or <code>null</code> to follow
+	 *            all the references
+	 */
+	public LazyReachability(ResourceSet resourceSet, int maxLoadedResources, ReferenceFilter filter) {
+		if (maxLoadedResources < 1) {
+			throw new IllegalArgumentException(String.valueOf(maxLoadedResources));
+		}
+		this.resourceSet = resourceSet;
+		this.maxLoadedResources = maxLoadedResources;
+		this.filter = filter != null ? filter : ReferenceFilter.exclude(Collections.<EReference> emptySet());
+	}
+
+	/**
+	 * Visits all the objects reachable from <code>roots</code> that have not
+	 * been visited yet
+	 *
+	 * @param roots
+	 *            The {@link URI}s of the roots, including their fragments
+	 * @return The number of newly visited objects
+	 */
+	public int traverse(Collection<URI> roots) {
+		int initialCount = visitedCount;
+		Map<URI, ArrayDeque<String>> pending = new LinkedHashMap<>();
+		for (URI root : roots) {
+			visit(root, pending);
+		}
+		while (!pending.isEmpty()) {
+			URI resourceURI = nextResource(pending);
+			ArrayDeque<String> fragments = pending.get(resourceURI);
+			Resource resource = getResource(resourceURI);
+			if (resource == null) {
+				unresolvedCount += fragments.size();
+				pending.remove(resourceURI);
+				continue;
+			}
+			// Objects of the same resource are appended to the deque being
+			// drained, so they are handled while the resource is loaded
+			while (!fragments.isEmpty()) {
+				EObject eObject = resource.getEObject(fragments.poll());
+				if (eObject == null) {
+					unresolvedCount++;
+					continue;
+				}
+				Resource eObjectResource = eObject.eResource();
+				if (eObjectResource != resource) {
+					// Stored in another resource (cross-resource containment)
+					visit(eObjectResource.getURI().appendFragment(getURIFragment(eObjectResource, eObject)), pending);
+					continue;
+				}
+				Map<String, Boolean> resourceFragments = visited.get(resourceURI);
+				if (resourceFragments.put(getURIFragment(resource, eObject), Boolean.TRUE) == Boolean.TRUE) {
+					// Already visited through another fragment
+					continue;
+				}
+				visitedCount++;
+				visitTargets((InternalEObject) eObject, filter.getContainmentFeatureIds(eObject.eClass()), pending);
+				visitTargets((InternalEObject) eObject, filter.getCrossReferenceFeatureIds(eObject.eClass()), pending);
+			}
+			pending.remove(resourceURI);
+		}
+		return visitedCount - initialCount;
+	}
+
+	/**
+	 * Returns the next {@link Resource} to process: the most recently used
+	 * loaded {@link Resource} with pending objects, or the one that has been
+	 * pending for longest
+	 */
+	private URI nextResource(Map<URI, ArrayDeque<String>> pending) {
+		URI next = null;
+		for (URI resourceURI : loadedResources.keySet()) {
+			if (pending.containsKey(resourceURI)) {
+				next = resourceURI;
+			}
+		}
+		return next != null ? next : pending.keySet().iterator().next();
+	}
+
+	private void visitTargets(InternalEObject eObject, int[] featureIds, Map<URI, ArrayDeque<String>> pending) {
+		for (int featureId : featureIds) {
+			if (!eObject.eIsSet(featureId)) {
+				// Getting an unset many-valued feature would create its
+				// (empty) list in the object
+				continue;
+			}
+			Object value = eObject.eGet(featureId, false, true);
+			if (value instanceof InternalEList<?>) {
+				// List.get would resolve the proxies
+				InternalEList<?> values = (InternalEList<?>) value;
+				for (int i = 0, size = values.size(); i < size; i++) {
+					visitTarget((EObject) values.basicGet(i), pending);
+				}
+			} else if (value instanceof List<?>) {
+				List<?> values = (List<?>) value;
+				for (int i = 0, size = values.size(); i < size; i++) {
+					visitTarget((EObject) values.get(i), pending);
+				}
+			} else if (value != null) {
+				visitTarget((EObject) value, pending);
+			}
+		}
+	}
+
+	private void visitTarget(EObject target, Map<URI, ArrayDeque<String>> pending) {
+		if (target.eIsProxy()) {
+			visit(((InternalEObject) target).eProxyURI(), pending);
+		} else {
+			Resource targetResource = target.eResource();
+			if (targetResource == null) {
+				// Objects that are not contained by any resource can not be
+				// found again once their resource is unloaded
+				unresolvedCount++;
+			} else {
+				visit(targetResource.getURI().appendFragment(getURIFragment(targetResource, target)), pending);
+			}
+		}
+	}
+
+	/**
+	 * Returns the URI fragment of <code>eObject</code>. The fragments of the
+	 * objects of loaded {@link Resource}s are obtained from a
+	 * {@link PositionalIndex}, built on first use, instead of
+	 * {@link Resource#getURIFragment(EObject)}, which searches the
+	 * containment list of every ancestor
+	 */
+	private String getURIFragment(Resource resource, EObject eObject) {
+		FragmentIndex fragmentIndex = fragmentIndexes.get(resource);
+		if (fragmentIndex == null) {
+			if (loadedResources.get(resource.getURI()) != resource) {
+				return resource.getURIFragment(eObject);
+			}
+			fragmentIndex = new FragmentIndex(resource);
+			fragmentIndexes.put(resource, fragmentIndex);
+		}
+		int node = fragmentIndex.nodes.get(eObject);
+		return node != IdentityIntMap.NO_VALUE ? fragmentIndex.index.getURIFragment(node) : resource.getURIFragment(eObject);
+	}
+
+	/**
+	 * Requests the object with the given {@link URI}, unless its fragment
+	 * has already been requested
+	 */
+	private void visit(URI uri, Map<URI, ArrayDeque<String>> pending) {
+		URI resourceURI = normalize(uri);
+		Map<String, Boolean> fragments = visited.get(resourceURI);
+		if (fragments == null) {
+			fragments = new HashMap<>();
+			visited.put(resourceURI, fragments);
+		}
+		if (!fragments.containsKey(uri.fragment())) {
+			fragments.put(uri.fragment(), Boolean.FALSE);
+			ArrayDeque<String> resourcePending = pending.get(resourceURI);
+			if (resourcePending == null) {
+				resourcePending = new ArrayDeque<>();
+				pending.put(resourceURI, resourcePending);
+			}
+			resourcePending.add(uri.fragment());
+		}
+	}
+
+	/**
+	 * Returns the normalized {@link URI} of the {@link Resource} of
+	 * <code>uri</code>
+	 */
+	private URI normalize(URI uri) {
+		return resourceSet.getURIConverter().normalize(uri.trimFragment());
+	}
+
+	/**
+	 * Returns the {@link Resource} with the given {@link URI}, loading it and
+	 * unloading the least recently used {@link Resource} if needed, or
+	 * <code>null</code> if it can not be loaded
+	 */
+	private Resource getResource(URI resourceURI) {
+		Resource resource = loadedResources.get(resourceURI);
+		if (resource != null) {
+			return resource;
+		}
+		if (missingResources.contains(resourceURI)) {
+			return null;
+		}
+		while (loadedResources.size() >= maxLoadedResources) {
+			Iterator<Resource> it = loadedResources.values().iterator();
+			Resource eldest = it.next();
+			it.remove();
+			fragmentIndexes.remove(eldest);
+			eldest.unload();
+			resourceSet.getResources().remove(eldest);
+		}
+		try {
+			resource = resourceSet.getResource(resourceURI, false);
+			if (resource == null || !resource.isLoaded()) {
+				resource = resourceSet.getResource(resourceURI, true);
+				loadCount++;
+			}
+		} catch (RuntimeException e) {
+			LOG.log(Level.WARNING, MessageFormat.format("Unable to load {0}", resourceURI), e);
+			missingResources.add(resourceURI);
+			Resource failed = resourceSet.getResource(resourceURI, false);
+			if (failed != null) {
+				failed.unload();
+				resourceSet.getResources().remove(failed);
+			}
+			return null;
+		}
+		loadedResources.put(resourceURI, resource);
+		return resource;
+	}
+
+	/**
+	 * Returns whether the object with the given {@link URI} has been visited.
+	 * Fragments that are not canonical are only recognized if they have been
+	 * requested, or if the {@link Resource} is loaded
+	 */
+	public boolean isVisited(URI uri) {
+		URI resourceURI = normalize(uri);
+		Map<String, Boolean> fragments = visited.get(resourceURI);
+		if (fragments == null) {
+			return false;
+		} else if (fragments.get(uri.fragment()) == Boolean.TRUE) {
+			return true;
+		}
+		Resource resource = loadedResources.get(resourceURI);
+		EObject eObject = resource != null ? resource.getEObject(uri.fragment()) : null;
+		return eObject != null && eObject.eResource() == resource && fragments.get(getURIFragment(resource, eObject)) == Boolean.TRUE;
+	}
+
+	/**
+	 * @return The number of visited objects
+	 */
+	public int getVisitedCount() {
+		return visitedCount;
+	}
+
+	/**
+	 * @return The number of visited objects of every {@link Resource}, by
+	 *         {@link URI}
+	 */
+	public Map<URI, Integer> getVisitedCounts() {
+		Map<URI, Integer> counts = new HashMap<>();
+		for (Entry<URI, Map<String, Boolean>> entry : visited.entrySet()) {
+			int count = 0;
+			for (Boolean canonical : entry.getValue().values()) {
+				if (canonical) {
+					count++;
+				}
+			}
+			if (count > 0) {
+				counts.put(entry.getKey(), count);
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * @return The number of requested fragments that could not be resolved,
+	 *         because their target or its {@link Resource} does not exist
+	 */
+	public int getUnresolvedCount() {
+		return unresolvedCount;
+	}
+
+	/**
+	 * @return The number of times a {@link Resource} has been loaded,
+	 *         including reloads after being unloaded
+	 */
+	public int getLoadCount() {
+		return loadCount;
+	}
+
+	/**
+	 * Forgets the visited objects, keeping the loaded {@link Resource}s
+	 */
+	public void clear() {
+		visited.clear();
+		visitedCount = 0;
+		unresolvedCount = 0;
+	}
+
+	/**
+	 * Unloads all the loaded {@link Resource}s
+	 */
+	public void dispose() {
+		for (Resource resource : loadedResources.values()) {
+			resource.unload();
+			resourceSet.getResources().remove(resource);
+		}
+		loadedResources.clear();
+		fragmentIndexes.clear();
+	}
+
+	private static class FragmentIndex {
+		private final IdentityIntMap<EObject> nodes = new IdentityIntMap<>(1024);
+		private final PositionalIndex index;
+
+		private FragmentIndex(Resource resource) {
+			index = PositionalIndex.build(resource, nodes);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Fixed-length array of <code>long</code>s, stored either in the Java heap
+ * or outside of it, in direct {@link ByteBuffer}s split in chunks of at
+ * most 2<sup>27</sup> <code>long</code>s (1 GB), as {@link IntArray}
+ *
+ * @author agomez
+ *
+ */
+abstract class LongArray {
+
+	private static final int CHUNK_SHIFT = 27;
+	private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+	abstract long get(int index);
+
+	abstract void set(int index, long value);
+
+	abstract int length();
+
+	/**
+	 * Sets all the elements to <code>0</code>
+	 */
+	abstract void clear();
+
+	/**
+	 * Returns an array backed by <code>array</code>
+	 */
+	static LongArray wrap(long[] array) {
+		return new HeapLongArray(array);
+	}
+
+	/**
+	 * Allocates a zero-filled array, either in the heap or in direct
+	 * {@link ByteBuffer}s
+	 */
+	static LongArray allocate(int length, boolean offHeap) {
+		if (!offHeap) {
+			return new HeapLongArray(new long[length]);
+		}
+		LongBuffer[] chunks = new LongBuffer[(int) (((long) length + CHUNK_MASK) >>> CHUNK_SHIFT)];
+		for (int chunk = 0; chunk < chunks.length; chunk++) {
+			int chunkLength = Math.min(length - (chunk << CHUNK_SHIFT), 1 << CHUNK_SHIFT);
+			chunks[chunk] = ByteBuffer.allocateDirect(chunkLength * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+		}
+		return new BufferLongArray(chunks, length);
+	}
+
+	private static final class HeapLongArray extends LongArray {
+
+		private final long[] array;
+
+		private HeapLongArray(long[] array) {
+			this.array = array;
+		}
+
+		@Override
+		long get(int index) {
+			return array[index];
+		}
+
+		@Override
+		void set(int index, long value) {
+			array[index] = value;
+		}
+
+		@Override
+		int length() {
+			return array.length;
+		}
+
+		@Override
+		void clear() {
+			Arrays.fill(array, 0);
+		}
+	}
+
+	private static final class BufferLongArray extends LongArray {
+
+		private final LongBuffer[] chunks;
+		private final int length;
+
+		private BufferLongArray(LongBuffer[] chunks, int length) {
+			this.chunks = chunks;
+			this.length = length;
+		}
+
+		@Override
+		long get(int index) {
+			return chunks[index >>> CHUNK_SHIFT].get(index & CHUNK_MASK);
+		}
+
+		@Override
+		void set(int index, long value) {
+			chunks[index >>> CHUNK_SHIFT].put(index & CHUNK_MASK, value);
+		}
+
+		@Override
+		int length() {
+			return length;
+		}
+
+		@Override
+		void clear() {
+			for (LongBuffer chunk : chunks) {
+				for (int index = 0, limit = chunk.limit(); index < limit; index++) {
+					chunk.put(index, 0);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,608 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EContentsEList;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+/**
+ * Compact, integer-indexed snapshot of the graph formed by the
+ * {@link EObject}s of a {@link Resource} and their {@link EReference}s.
+ * <p>
+ * Every {@link EObject} is numbered following the order of
+ * {@link Resource#getAllContents()}, so that nodes
+ * <code>[0, {@link #resourceSize()})</code> are the contents of the
+ * {@link Resource}. {@link EObject}s of other {@link Resource}s that are
+ * reachable through cross-references are numbered afterwards. Edges are
+ * stored in compressed-sparse-row form: the successors of node
+ * <code>n</code> are the targets in <code>[edgeStart(n), edgeEnd(n))</code>,
+ * containment edges first and cross-reference edges from
+ * <code>crossStart(n)</code> on. The {@link EReference} of every edge is
+ * recorded as its feature id in the {@link EClass} of the source.
+ * <p>
+ * Graphs built with {@link #build(Resource)} keep a reference to the
+ * {@link EObject} of every node. Graphs extracted by other means (e.g.
+ * {@link StreamingGraphLoader}) only know the {@link EClass} of every node,
+ * and compute {@link URI}s from a {@link PositionalIndex}.
+ * <p>
+ * The class ids and the edge arrays are kept either in the Java heap or,
+ * for graphs that are too large for it, outside of the heap (see
+ * {@link #toOffHeap()} and {@link GraphCache#load(String, URI, String, boolean)});
+ * both kinds of graphs are traversed through the same methods.
+ *
+ * @author agomez
+ *
+ */
+public class ModelGraph {
+
+	/**
+	 * Class id of the nodes whose {@link EClass} is unknown
+	 */
+	public static final int NO_CLASS = -1;
+
+	private final URI uri;
+	private final int size;
+	private final int resourceSize;
+	private final IntArray classIds;
+	private final EClass[] eClasses;
+	private final IntArray edgeOffsets;
+	private final IntArray crossOffsets;
+	private final IntArray targets;
+	private final IntArray edgeFeatureIds;
+	private final EObject[] eObjects;
+	private final IdentityIntMap<EObject> ids;
+	private final PositionalIndex positionalIndex;
+	private final BitSet customFragments;
+	private final String[] customURIs;
+	private final String[] externalURIs;
+	private final TypeIndex typeIndex;
+	private volatile ReverseGraph reverseGraph;
+	private volatile Map<String, Integer> customNodes;
+
+	/**
+	 * Creates a graph that is not backed by {@link EObject}s
+	 *
+	 * @param uri
+	 *            The {@link URI} of the {@link Resource}
+	 * @param resourceSize
+	 *            The number of nodes of the {@link Resource}
+	 * @param classIds
+	 *            The class id of every node, or {@link #NO_CLASS}
+	 * @param eClasses
+	 *            The {@link EClass} of every class id
+	 * @param edgeOffsets
+	 *            The CSR edge offsets (one per node, plus one)
+	 * @param crossOffsets
+	 *            The offset of the first cross-reference edge of every node
+	 * @param targets
+	 *            The CSR edge targets
+	 * @param edgeFeatureIds
+	 *            The feature id of the {@link EReference} of every edge, in
+	 *            the {@link EClass} of its source
+	 * @param positionalIndex
+	 *            The {@link PositionalIndex} of the nodes of the
+	 *            {@link Resource}
+	 * @param externalURIs
+	 *            The {@link URI}s of the nodes that do not belong to the
+	 *            {@link Resource}
+	 */
+	ModelGraph(URI uri, int resourceSize, int[] classIds, EClass[] eClasses, int[] edgeOffsets, int[] crossOffsets,
+			int[] targets, int[] edgeFeatureIds, PositionalIndex positionalIndex, String[] externalURIs) {
+		this(uri, resourceSize, IntArray.wrap(classIds), eClasses, IntArray.wrap(edgeOffsets), IntArray.wrap(crossOffsets), IntArray.wrap(targets),
+				IntArray.wrap(edgeFeatureIds), positionalIndex, null, externalURIs);
+	}
+
+	/**
+	 * Creates a graph that is not backed by {@link EObject}s, whose arrays
+	 * may be stored outside of the heap
+	 *
+	 * @param customURIs
+	 *            The {@link URI} of every node of the {@link Resource} whose
+	 *            {@link URI} is not given by the {@link PositionalIndex}, or
+	 *            <code>null</code>; {@link URI}s starting with <code>#</code>
+	 *            are fragments of the {@link Resource}. The array itself may
+	 *            be <code>null</code> if there are no such nodes
+	 */
+	ModelGraph(URI uri, int resourceSize, IntArray classIds, EClass[] eClasses, IntArray edgeOffsets, IntArray crossOffsets,
+			IntArray targets, IntArray edgeFeatureIds, PositionalIndex positionalIndex, String[] customURIs, String[] externalURIs) {
+		this(uri, resourceSize, classIds, eClasses, edgeOffsets, crossOffsets, targets, edgeFeatureIds, null, null, positionalIndex, null, customURIs,
+				externalURIs);
+	}
+
+	private ModelGraph(URI uri, int resourceSize, IntArray classIds, EClass[] eClasses, IntArray edgeOffsets, IntArray crossOffsets,
+			IntArray targets, IntArray edgeFeatureIds, EObject[] eObjects, IdentityIntMap<EObject> ids, PositionalIndex positionalIndex, BitSet customFragments, String[] customURIs, String[] externalURIs) {
+		this.uri = uri;
+		this.size = classIds.length();
+		this.resourceSize = resourceSize;
+		this.classIds = classIds;
+		this.eClasses = eClasses;
+		this.edgeOffsets = edgeOffsets;
+		this.crossOffsets = crossOffsets;
+		this.targets = targets;
+		this.edgeFeatureIds = edgeFeatureIds;
+		this.eObjects = eObjects;
+		this.ids = ids;
+		this.positionalIndex = positionalIndex;
+		this.customFragments = customFragments;
+		this.customURIs = customURIs;
+		this.externalURIs = externalURIs;
+		this.typeIndex = new TypeIndex(eClasses, classIds, resourceSize);
+	}
+
+	/**
+	 * Builds the {@link ModelGraph} of the given {@link Resource}. Nodes are
+	 * numbered in a single pass over {@link Resource#getAllContents()}, and
+	 * the edges of every node are then recorded by following its
+	 * {@link EObject#eContents()} and {@link EObject#eCrossReferences()}
+	 *
+	 * @param resource
+	 *            The {@link Resource}
+	 * @return The {@link ModelGraph}
+	 */
+	public static ModelGraph build(Resource resource) {
+		return build(resource, null);
+	}
+
+	/**
+	 * Builds the {@link ModelGraph} of the given {@link Resource}, recording
+	 * only the edges of the {@link EReference}s accepted by
+	 * <code>filter</code>. All the contents of the {@link Resource} are
+	 * nodes of the graph, even if they are not reachable through the
+	 * accepted references
+	 *
+	 * @param resource
+	 *            The {@link Resource}
+	 * @param filter
+	 *            The {@link ReferenceFilter}, or <code>null</code> to follow
+	 *            all the references
+	 * @return The {@link ModelGraph}
+	 */
+	public static ModelGraph build(Resource resource, ReferenceFilter filter) {
+		NodeTable nodes = new NodeTable();
+		PositionalIndex.Builder positionalIndex = new PositionalIndex.Builder(resource);
+		for (TreeIterator<EObject> it = resource.getAllContents(); it.hasNext();) {
+			InternalEObject eObject = (InternalEObject) it.next();
+			// With cross-resource containment, a root of the resource may
+			// also be reached from the contents of another root: its subtree
+			// is only numbered once
+			if (nodes.ids.get(eObject) != IdentityIntMap.NO_VALUE) {
+				it.prune();
+				continue;
+			}
+			// Containers precede their contents in getAllContents() order
+			InternalEObject eContainer = eObject.eInternalContainer();
+			positionalIndex.add(eObject, eContainer != null && eObject.eDirectResource() != resource ? nodes.ids.get(eContainer)
+					: PositionalIndex.NO_CONTAINER);
+			nodes.idOf(eObject);
+		}
+		int resourceSize = nodes.size;
+
+		IntList edgeOffsets = new IntList(resourceSize + 1);
+		IntList crossOffsets = new IntList(resourceSize);
+		IntList targets = new IntList(resourceSize * 2);
+		IntList edgeFeatureIds = new IntList(resourceSize * 2);
+		edgeOffsets.add(0);
+		// External objects are appended to the node table while iterating,
+		// so that their own edges are also recorded
+		for (int node = 0; node < nodes.size; node++) {
+			EObject eObject = nodes.eObjects[node];
+			EClass eClass = eObject.eClass();
+			if (filter == null) {
+				addTargets(eClass, eObject.eContents(), nodes, targets, edgeFeatureIds);
+				crossOffsets.add(targets.size());
+				addTargets(eClass, eObject.eCrossReferences(), nodes, targets, edgeFeatureIds);
+			} else {
+				addTargets((InternalEObject) eObject, filter.getContainmentFeatureIds(eClass), nodes, targets, edgeFeatureIds);
+				crossOffsets.add(targets.size());
+				addTargets((InternalEObject) eObject, filter.getCrossReferenceFeatureIds(eClass), nodes, targets, edgeFeatureIds);
+			}
+			edgeOffsets.add(targets.size());
+		}
+		EObject[] eObjects = Arrays.copyOf(nodes.eObjects, nodes.size);
+		IdentityIntMap<EClass> eClassIds = new IdentityIntMap<>(256);
+		List<EClass> eClasses = new ArrayList<>();
+		int[] classIds = new int[eObjects.length];
+		for (int node = 0; node < eObjects.length; node++) {
+			EClass eClass = eObjects[node].eClass();
+			int classId = eClassIds.get(eClass);
+			if (classId == IdentityIntMap.NO_VALUE) {
+				classId = eClasses.size();
+				eClassIds.put(eClass, classId);
+				eClasses.add(eClass);
+			}
+			classIds[node] = classId;
+		}
+		return new ModelGraph(resource.getURI(), resourceSize, IntArray.wrap(classIds), eClasses.toArray(new EClass[eClasses.size()]),
+				IntArray.wrap(edgeOffsets.toArray()), IntArray.wrap(crossOffsets.toArray()), IntArray.wrap(targets.toArray()),
+				IntArray.wrap(edgeFeatureIds.toArray()), eObjects, nodes.ids, positionalIndex.isSupported() ? positionalIndex.build() : null,
+				positionalIndex.getCustomFragments(), null, null);
+	}
+
+	/**
+	 * Adds to <code>targets</code> the values of the features
+	 * <code>featureIds</code> of <code>eObject</code>. Unset features are
+	 * skipped, since getting an unset many-valued feature would create its
+	 * (empty) list in the object
+	 */
+	private static void addTargets(InternalEObject eObject, int[] featureIds, NodeTable nodes, IntList targets, IntList edgeFeatureIds) {
+		for (int featureId : featureIds) {
+			if (!eObject.eIsSet(featureId)) {
+				continue;
+			}
+			Object value = eObject.eGet(featureId, true, true);
+			if (value instanceof List<?>) {
+				List<?> values = (List<?>) value;
+				for (int i = 0, size = values.size(); i < size; i++) {
+					targets.add(nodes.idOf((EObject) values.get(i)));
+					edgeFeatureIds.add(featureId);
+				}
+			} else if (value != null) {
+				targets.add(nodes.idOf((EObject) value));
+				edgeFeatureIds.add(featureId);
+			}
+		}
+	}
+
+	/**
+	 * Adds to <code>targets</code> the objects of <code>contents</code>, the
+	 * {@link EObject#eContents()} or {@link EObject#eCrossReferences()} of
+	 * an instance of <code>eClass</code>
+	 */
+	private static void addTargets(EClass eClass, EList<EObject> contents, NodeTable nodes, IntList targets, IntList edgeFeatureIds) {
+		EStructuralFeature lastFeature = null;
+		int featureId = -1;
+		for (EContentsEList.FeatureIterator<EObject> it = (EContentsEList.FeatureIterator<EObject>) contents.iterator(); it.hasNext();) {
+			targets.add(nodes.idOf(it.next()));
+			if (it.feature() != lastFeature) {
+				lastFeature = it.feature();
+				featureId = eClass.getFeatureID(lastFeature);
+			}
+			edgeFeatureIds.add(featureId);
+		}
+	}
+
+	/**
+	 * @return The {@link URI} of the {@link Resource} of this graph
+	 */
+	public URI getURI() {
+		return uri;
+	}
+
+	/**
+	 * @return The total number of nodes, including those that belong to
+	 *         other {@link Resource}s
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The number of nodes that belong to the {@link Resource} of
+	 *         this graph
+	 */
+	public int resourceSize() {
+		return resourceSize;
+	}
+
+	/**
+	 * @return The number of edges
+	 */
+	public int edgeCount() {
+		return targets.length();
+	}
+
+	public int edgeStart(int node) {
+		return edgeOffsets.get(node);
+	}
+
+	public int crossStart(int node) {
+		return crossOffsets.get(node);
+	}
+
+	public int edgeEnd(int node) {
+		return edgeOffsets.get(node + 1);
+	}
+
+	public int target(int edge) {
+		return targets.get(edge);
+	}
+
+	/**
+	 * Returns the node whose successors include <code>edge</code>, by
+	 * binary search over the edge offsets
+	 */
+	public int edgeSource(int edge) {
+		int low = 0;
+		int high = edgeOffsets.length() - 2;
+		// Largest node whose first edge is not after edge (nodes without
+		// edges share their offset with the next node)
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (edgeOffsets.get(middle) <= edge) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the feature id of the {@link EReference} of <code>edge</code>
+	 * in the {@link EClass} of its source
+	 */
+	public int getFeatureId(int edge) {
+		return edgeFeatureIds.get(edge);
+	}
+
+	/**
+	 * Returns the {@link EReference} of <code>edge</code>, as recorded when
+	 * the edge was extracted, or <code>null</code> if the {@link EClass} of
+	 * its source is unknown
+	 */
+	public EReference getEReference(int edge) {
+		EClass eClass = getEClass(edgeSource(edge));
+		return eClass != null ? (EReference) eClass.getEStructuralFeature(getFeatureId(edge)) : null;
+	}
+
+	/**
+	 * Returns the {@link EObject} of <code>node</code>, or <code>null</code>
+	 * if this graph is not backed by {@link EObject}s
+	 */
+	public EObject getEObject(int node) {
+		return eObjects != null ? eObjects[node] : null;
+	}
+
+	/**
+	 * Returns the class id of <code>node</code>, or {@link #NO_CLASS} if its
+	 * {@link EClass} is unknown
+	 */
+	public int getClassId(int node) {
+		return classIds.get(node);
+	}
+
+	/**
+	 * Returns the {@link EClass} of <code>node</code>, or <code>null</code>
+	 * if it is unknown
+	 */
+	public EClass getEClass(int node) {
+		int classId = classIds.get(node);
+		return classId != NO_CLASS ? eClasses[classId] : null;
+	}
+
+	/**
+	 * @return The number of distinct class ids
+	 */
+	public int classCount() {
+		return eClasses.length;
+	}
+
+	/**
+	 * @return The {@link EClass} of <code>classId</code>
+	 */
+	public EClass getClass(int classId) {
+		return eClasses[classId];
+	}
+
+	/**
+	 * @return The {@link TypeIndex} of the nodes of the {@link Resource}
+	 */
+	public TypeIndex getTypeIndex() {
+		return typeIndex;
+	}
+
+	/**
+	 * @return Whether the class ids and the edges of this graph are stored
+	 *         outside of the Java heap
+	 */
+	public boolean isOffHeap() {
+		return targets.isOffHeap();
+	}
+
+	/**
+	 * Returns a copy of this graph whose class ids and edges are stored in
+	 * direct buffers, outside of the Java heap, so that they do not add to
+	 * the work of the garbage collector. The {@link EObject}s, the
+	 * {@link PositionalIndex} and the external {@link URI}s are shared with
+	 * this graph
+	 *
+	 * @return The copy, or this graph if it is already off-heap
+	 */
+	public ModelGraph toOffHeap() {
+		if (isOffHeap()) {
+			return this;
+		}
+		return new ModelGraph(uri, resourceSize, IntArray.allocateDirect(classIds), eClasses, IntArray.allocateDirect(edgeOffsets),
+				IntArray.allocateDirect(crossOffsets), IntArray.allocateDirect(targets), IntArray.allocateDirect(edgeFeatureIds), eObjects, ids,
+				positionalIndex, customFragments, customURIs, externalURIs);
+	}
+
+	/**
+	 * Returns the {@link ReverseGraph} of this graph. It is computed on
+	 * first use, so graphs that are only traversed forward do not pay for
+	 * it
+	 *
+	 * @return The {@link ReverseGraph}
+	 */
+	public ReverseGraph getReverseGraph() {
+		ReverseGraph result = reverseGraph;
+		if (result == null) {
+			synchronized (this) {
+				result = reverseGraph;
+				if (result == null) {
+					result = new ReverseGraph(this);
+					reverseGraph = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the node number of <code>eObject</code>, or <code>-1</code> if
+	 * it is not part of this graph
+	 */
+	public int getId(EObject eObject) {
+		return ids != null ? ids.get(eObject) : IdentityIntMap.NO_VALUE;
+	}
+
+	/**
+	 * Returns the node of the {@link Resource} of this graph whose
+	 * {@link URI} fragment is <code>uriFragment</code>, or <code>-1</code>
+	 * if there is none. Graphs that are not backed by {@link EObject}s look
+	 * it up in their {@link PositionalIndex} (see
+	 * {@link PositionalIndex#getNode(String)}), and in a map of the fragments
+	 * that are not position-based, computed on first use
+	 */
+	public int getNode(String uriFragment) {
+		if (eObjects != null) {
+			if (resourceSize == 0) {
+				return -1;
+			}
+			try {
+				EObject eObject = eObjects[0].eResource().getEObject(uriFragment);
+				return eObject != null ? getId(eObject) : -1;
+			} catch (IllegalArgumentException e) {
+				// Fragment segment naming an unknown feature
+				return -1;
+			}
+		}
+		if (customURIs != null) {
+			Integer node = getCustomNodes().get(uriFragment);
+			if (node != null) {
+				return node;
+			}
+		}
+		return positionalIndex != null ? positionalIndex.getNode(uriFragment) : -1;
+	}
+
+	/**
+	 * Returns the nodes of the {@link Resource} whose {@link URI} is not
+	 * given by the {@link PositionalIndex}, by fragment
+	 */
+	private Map<String, Integer> getCustomNodes() {
+		Map<String, Integer> result = customNodes;
+		if (result == null) {
+			synchronized (this) {
+				result = customNodes;
+				if (result == null) {
+					result = new HashMap<>();
+					for (int node = 0; node < resourceSize; node++) {
+						String customURI = customURIs[node];
+						if (customURI != null && customURI.charAt(0) == '#' && !result.containsKey(customURI.substring(1))) {
+							result.put(customURI.substring(1), node);
+						}
+					}
+					customNodes = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return The {@link PositionalIndex} of this graph, or <code>null</code>
+	 */
+	public PositionalIndex getPositionalIndex() {
+		return positionalIndex;
+	}
+
+	/**
+	 * Returns the {@link URI} of <code>node</code>. The fragments of the
+	 * nodes of the {@link Resource} are built from the
+	 * {@link PositionalIndex}, in <code>O(depth)</code>; the {@link URI}s of
+	 * other nodes, and of nodes whose fragment is not position-based, are
+	 * computed by EMF
+	 */
+	public URI getURI(int node) {
+		if (hasPositionalURI(node)) {
+			return uri.appendFragment(positionalIndex.getURIFragment(node));
+		} else if (eObjects != null) {
+			return EcoreUtil.getURI(eObjects[node]);
+		} else if (node < resourceSize) {
+			String customURI = customURIs[node];
+			return customURI.charAt(0) == '#' ? uri.appendFragment(customURI.substring(1)) : URI.createURI(customURI);
+		} else {
+			return URI.createURI(externalURIs[node - resourceSize]);
+		}
+	}
+
+	/**
+	 * Returns whether the {@link URI} of <code>node</code> is the
+	 * {@link URI} of the {@link Resource} with the fragment given by the
+	 * {@link PositionalIndex}
+	 */
+	boolean hasPositionalURI(int node) {
+		if (node >= resourceSize || positionalIndex == null) {
+			return false;
+		}
+		return eObjects != null ? !customFragments.get(node) : customURIs == null || customURIs[node] == null;
+	}
+
+	/**
+	 * Adds to <code>eObjects</code> the {@link EObject}s of the nodes in
+	 * <code>nodes</code>
+	 *
+	 * @param nodes
+	 *            The set of nodes
+	 * @param eObjects
+	 *            The {@link Set} to fill
+	 * @return The given {@link Set}
+	 */
+	public Set<EObject> toEObjects(BitSet nodes, Set<EObject> eObjects) {
+		if (this.eObjects == null) {
+			throw new UnsupportedOperationException("Graph is not backed by EObjects");
+		}
+		for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1)) {
+			eObjects.add(this.eObjects[node]);
+		}
+		return eObjects;
+	}
+
+	/**
+	 * Numbers {@link EObject}s in order of appearance
+	 */
+	private static class NodeTable {
+		private final IdentityIntMap<EObject> ids = new IdentityIntMap<>(1024);
+		private EObject[] eObjects = new EObject[1024];
+		private int size;
+
+		private int idOf(EObject eObject) {
+			int id = ids.get(eObject);
+			if (id == IdentityIntMap.NO_VALUE) {
+				if (size == eObjects.length) {
+					eObjects = Arrays.copyOf(eObjects, size * 2);
+				}
+				id = size++;
+				ids.put(eObject, id);
+				eObjects[id] = eObject;
+			}
+			return id;
+		}
+	}
+}
@@ -0,0 +1,390 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.InternalEList;
+
+/**
+ * Statistics of the contents of a {@link Resource}, collected in a single
+ * traversal of its containment tree: instances per {@link EClass},
+ * containment depth histogram, fan-out histogram of every
+ * {@link EReference}, number of cross-references, and ratio of instances
+ * in which every {@link EStructuralFeature} is unset.
+ * <p>
+ * Counters are kept in primitive arrays indexed by class id (assigned to
+ * every {@link EClass} when its first instance is found) and by feature
+ * id, so that the traversal does not allocate memory per object. Proxies
+ * are neither resolved nor visited: they only count as values of the
+ * references that hold them. Derived features and container references
+ * are ignored, as in {@link EObject#eCrossReferences()}.
+ * <p>
+ * Fan-outs are grouped in power-of-two buckets: bucket <code>0</code>
+ * counts the objects without values, and bucket <code>b > 0</code> the
+ * objects with <code>[2<sup>b-1</sup>, 2<sup>b</sup>)</code> values
+ *
+ * @author agomez
+ *
+ */
+public class ModelStatistics {
+
+	/**
+	 * Number of fan-out buckets
+	 */
+	public static final int BUCKETS = 32;
+
+	private final IdentityIntMap<EClass> classIds = new IdentityIntMap<>(256);
+	private ClassStatistics[] classes = new ClassStatistics[16];
+	private int classCount;
+	private long[] depthHistogram = new long[16];
+	private int maxDepth = -1;
+	private int elementCount;
+	private long containmentCount;
+	private long crossReferenceCount;
+
+	private ModelStatistics() {
+	}
+
+	/**
+	 * Collects the statistics of the contents of <code>resource</code>
+	 *
+	 * @param resource
+	 *            The {@link Resource}
+	 * @return The {@link ModelStatistics}
+	 */
+	public static ModelStatistics compute(Resource resource) {
+		ModelStatistics statistics = new ModelStatistics();
+		EObject[] stack = new EObject[64];
+		IntList depths = new IntList(64);
+		InternalEList<?> roots = (InternalEList<?>) resource.getContents();
+		int top = 0;
+		for (int i = roots.size() - 1; i >= 0; i--) {
+			EObject root = (EObject) roots.basicGet(i);
+			if (top == stack.length) {
+				stack = Arrays.copyOf(stack, top * 2);
+			}
+			stack[top++] = root;
+			depths.add(0);
+		}
+		while (top > 0) {
+			InternalEObject eObject = (InternalEObject) stack[--top];
+			stack[top] = null;
+			int depth = depths.get(top);
+			depths.truncate(top);
+			ClassStatistics classStatistics = statistics.classStatistics(eObject.eClass());
+			statistics.countDepth(depth);
+			statistics.elementCount++;
+			classStatistics.instanceCount++;
+			for (int featureId : classStatistics.featureIds) {
+				boolean isSet = eObject.eIsSet(featureId);
+				classStatistics.isSet[featureId] = isSet;
+				if (isSet) {
+					classStatistics.setCounts[featureId]++;
+				}
+			}
+			for (int featureId : classStatistics.referenceIds) {
+				// Getting an unset many-valued feature would create its
+				// (empty) list in the object
+				Object value = classStatistics.isSet[featureId] ? eObject.eGet(featureId, false, true) : null;
+				int fanOut;
+				if (value instanceof List<?>) {
+					fanOut = ((List<?>) value).size();
+				} else {
+					fanOut = value != null ? 1 : 0;
+				}
+				classStatistics.fanOuts[featureId][bucket(fanOut)]++;
+				classStatistics.valueCounts[featureId] += fanOut;
+				if (fanOut > classStatistics.maxFanOuts[featureId]) {
+					classStatistics.maxFanOuts[featureId] = fanOut;
+				}
+				if (!classStatistics.containment[featureId]) {
+					statistics.crossReferenceCount += fanOut;
+					continue;
+				}
+				statistics.containmentCount += fanOut;
+				// Push the children in reverse order, so that they are
+				// visited in document order
+				if (value instanceof List<?>) {
+					InternalEList<?> children = (InternalEList<?>) value;
+					for (int i = fanOut - 1; i >= 0; i--) {
+						EObject child = (EObject) children.basicGet(i);
+						if (!child.eIsProxy()) {
+							if (top == stack.length) {
+								stack = Arrays.copyOf(stack, top * 2);
+							}
+							stack[top++] = child;
+							depths.add(depth + 1);
+						}
+					}
+				} else if (value != null && !((EObject) value).eIsProxy()) {
+					if (top == stack.length) {
+						stack = Arrays.copyOf(stack, top * 2);
+					}
+					stack[top++] = (EObject) value;
+					depths.add(depth + 1);
+				}
+			}
+		}
+		return statistics;
+	}
+
+	private ClassStatistics classStatistics(EClass eClass) {
+		int classId = classIds.get(eClass);
+		if (classId == IdentityIntMap.NO_VALUE) {
+			classId = classCount++;
+			classIds.put(eClass, classId);
+			if (classId == classes.length) {
+				classes = Arrays.copyOf(classes, classId * 2);
+			}
+			classes[classId] = new ClassStatistics(eClass);
+		}
+		return classes[classId];
+	}
+
+	private void countDepth(int depth) {
+		if (depth == depthHistogram.length) {
+			depthHistogram = Arrays.copyOf(depthHistogram, depth * 2);
+		}
+		depthHistogram[depth]++;
+		maxDepth = Math.max(maxDepth, depth);
+	}
+
+	/**
+	 * Returns the fan-out bucket of <code>fanOut</code>
+	 */
+	static int bucket(int fanOut) {
+		return 32 - Integer.numberOfLeadingZeros(fanOut);
+	}
+
+	/**
+	 * Returns the smallest fan-out of <code>bucket</code>
+	 */
+	public static int bucketLowerBound(int bucket) {
+		return bucket == 0 ? 0 : 1 << (bucket - 1);
+	}
+
+	/**
+	 * @return The number of objects of the {@link Resource}
+	 */
+	public int getElementCount() {
+		return elementCount;
+	}
+
+	/**
+	 * @return The number of {@link EClass}es with instances
+	 */
+	public int getClassCount() {
+		return classCount;
+	}
+
+	/**
+	 * @return The number of instances of every {@link EClass}, in order of
+	 *         first appearance
+	 */
+	public Map<EClass, Integer> getInstanceCounts() {
+		Map<EClass, Integer> counts = new LinkedHashMap<>();
+		for (int classId = 0; classId < classCount; classId++) {
+			counts.put(classes[classId].eClass, classes[classId].instanceCount);
+		}
+		return counts;
+	}
+
+	/**
+	 * @return The number of objects at every containment depth (roots are at
+	 *         depth <code>0</code>)
+	 */
+	public long[] getDepthHistogram() {
+		return Arrays.copyOf(depthHistogram, maxDepth + 1);
+	}
+
+	/**
+	 * @return The number of containment values
+	 */
+	public long getContainmentCount() {
+		return containmentCount;
+	}
+
+	/**
+	 * @return The number of cross-reference values
+	 */
+	public long getCrossReferenceCount() {
+		return crossReferenceCount;
+	}
+
+	/**
+	 * @return The average number of cross-references per object
+	 */
+	public double getCrossReferenceDensity() {
+		return elementCount == 0 ? 0 : (double) crossReferenceCount / elementCount;
+	}
+
+	/**
+	 * @return The {@link EStructuralFeature}s of the instances, in order of
+	 *         first appearance
+	 */
+	public List<EStructuralFeature> getFeatures() {
+		Set<EStructuralFeature> features = new LinkedHashSet<>();
+		for (int classId = 0; classId < classCount; classId++) {
+			ClassStatistics classStatistics = classes[classId];
+			for (int featureId : classStatistics.featureIds) {
+				features.add(classStatistics.eClass.getEStructuralFeature(featureId));
+			}
+		}
+		return new ArrayList<>(features);
+	}
+
+	/**
+	 * @return The {@link EReference}s whose fan-out is recorded, in order of
+	 *         first appearance
+	 */
+	public List<EReference> getEReferences() {
+		List<EReference> eReferences = new ArrayList<>();
+		for (EStructuralFeature feature : getFeatures()) {
+			if (feature instanceof EReference && !((EReference) feature).isContainer()) {
+				eReferences.add((EReference) feature);
+			}
+		}
+		return eReferences;
+	}
+
+	/**
+	 * Returns the ratio of the instances having <code>feature</code> in
+	 * which it is unset (see {@link EObject#eIsSet(EStructuralFeature)})
+	 */
+	public double getUnsetRatio(EStructuralFeature feature) {
+		long owners = 0;
+		long set = 0;
+		for (int classId = 0; classId < classCount; classId++) {
+			ClassStatistics classStatistics = classes[classId];
+			int featureId = classStatistics.eClass.getFeatureID(feature);
+			if (featureId >= 0) {
+				owners += classStatistics.instanceCount;
+				set += classStatistics.setCounts[featureId];
+			}
+		}
+		return owners == 0 ? 0 : (double) (owners - set) / owners;
+	}
+
+	/**
+	 * Returns the number of instances having <code>eReference</code> in
+	 * every fan-out bucket
+	 */
+	public long[] getFanOutHistogram(EReference eReference) {
+		long[] histogram = new long[BUCKETS];
+		for (int classId = 0; classId < classCount; classId++) {
+			ClassStatistics classStatistics = classes[classId];
+			int featureId = classStatistics.eClass.getFeatureID(eReference);
+			if (featureId >= 0 && classStatistics.fanOuts[featureId] != null) {
+				for (int bucket = 0; bucket < BUCKETS; bucket++) {
+					histogram[bucket] += classStatistics.fanOuts[featureId][bucket];
+				}
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * Returns the number of values of <code>eReference</code>
+	 */
+	public long getValueCount(EReference eReference) {
+		long count = 0;
+		for (int classId = 0; classId < classCount; classId++) {
+			ClassStatistics classStatistics = classes[classId];
+			int featureId = classStatistics.eClass.getFeatureID(eReference);
+			if (featureId >= 0 && classStatistics.fanOuts[featureId] != null) {
+				count += classStatistics.valueCounts[featureId];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the largest number of values of <code>eReference</code> in a
+	 * single object
+	 */
+	public int getMaxFanOut(EReference eReference) {
+		int max = 0;
+		for (int classId = 0; classId < classCount; classId++) {
+			ClassStatistics classStatistics = classes[classId];
+			int featureId = classStatistics.eClass.getFeatureID(eReference);
+			if (featureId >= 0 && classStatistics.fanOuts[featureId] != null) {
+				max = Math.max(max, classStatistics.maxFanOuts[featureId]);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Counters of the instances of an {@link EClass}, indexed by feature id
+	 */
+	private static final class ClassStatistics {
+
+		private final EClass eClass;
+		private int instanceCount;
+		/**
+		 * Ids of the features whose <code>eIsSet</code> is counted
+		 */
+		private final int[] featureIds;
+		/**
+		 * Ids of the references whose fan-out is counted
+		 */
+		private final int[] referenceIds;
+		/**
+		 * Whether every feature is set in the object being visited
+		 */
+		private final boolean[] isSet;
+		private final boolean[] containment;
+		private final long[] setCounts;
+		private final long[][] fanOuts;
+		private final long[] valueCounts;
+		private final int[] maxFanOuts;
+
+		private ClassStatistics(EClass eClass) {
+			this.eClass = eClass;
+			int featureCount = eClass.getFeatureCount();
+			IntList features = new IntList();
+			IntList references = new IntList();
+			this.isSet = new boolean[featureCount];
+			this.containment = new boolean[featureCount];
+			this.setCounts = new long[featureCount];
+			this.fanOuts = new long[featureCount][];
+			this.valueCounts = new long[featureCount];
+			this.maxFanOuts = new int[featureCount];
+			for (int featureId = 0; featureId < featureCount; featureId++) {
+				EStructuralFeature feature = eClass.getEStructuralFeature(featureId);
+				if (feature.isDerived()) {
+					continue;
+				}
+				features.add(featureId);
+				if (feature instanceof EReference && !((EReference) feature).isContainer()) {
+					references.add(featureId);
+					containment[featureId] = ((EReference) feature).isContainment();
+					fanOuts[featureId] = new long[BUCKETS];
+				}
+			}
+			this.featureIds = features.toArray();
+			this.referenceIds = references.toArray();
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Level-synchronous parallel breadth-first traversal of a
+ * {@link ModelGraph}. Every frontier is split in chunks that are expanded
+ * concurrently in a {@link ForkJoinPool}; nodes are claimed by atomically
+ * setting their bit in a shared visited set, so each node is expanded
+ * exactly once and the result is the same as
+ * {@link Reachability#getReachableNodes(ModelGraph, int)}
+ *
+ * @author agomez
+ *
+ */
+public class ParallelReachability {
+
+	/**
+	 * Number of frontier nodes expanded sequentially by a single task
+	 */
+	private static final int CHUNK_SIZE = 1024;
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates a new traversal engine
+	 *
+	 * @param threads
+	 *            The parallelism level of the underlying {@link ForkJoinPool}
+	 */
+	public ParallelReachability(int threads) {
+		this.pool = new ForkJoinPool(threads);
+	}
+
+	/**
+	 * Returns the set of nodes that can be reached from <code>root</code>
+	 * (including <code>root</code> itself)
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param root
+	 *            The initial node
+	 * @return The {@link BitSet} of reachable nodes
+	 */
+	public BitSet getReachableNodes(ModelGraph graph, int root) {
+		AtomicLongArray visited = new AtomicLongArray((graph.size() + Long.SIZE - 1) / Long.SIZE);
+		claim(visited, root);
+		int[] frontier = { root };
+		while (frontier.length > 0) {
+			int chunks = (frontier.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+			int[][] discovered = new int[chunks][];
+			pool.invoke(new ExpandTask(graph, visited, frontier, discovered, 0, chunks));
+			frontier = concat(discovered);
+		}
+		long[] words = new long[visited.length()];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = visited.get(i);
+		}
+		return BitSet.valueOf(words);
+	}
+
+	/**
+	 * Shuts down the underlying {@link ForkJoinPool}
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Atomically sets the bit of <code>node</code>
+	 *
+	 * @return <code>true</code> if this call set the bit, <code>false</code>
+	 *         if it was already set
+	 */
+	private static boolean claim(AtomicLongArray visited, int node) {
+		int index = node / Long.SIZE;
+		long mask = 1L << node;
+		long word;
+		do {
+			word = visited.get(index);
+			if ((word & mask) != 0) {
+				return false;
+			}
+		} while (!visited.compareAndSet(index, word, word | mask));
+		return true;
+	}
+
+	private static int[] concat(int[][] arrays) {
+		int length = 0;
+		for (int[] array : arrays) {
+			length += array.length;
+		}
+		int[] result = new int[length];
+		int position = 0;
+		for (int[] array : arrays) {
+			System.arraycopy(array, 0, result, position, array.length);
+			position += array.length;
+		}
+		return result;
+	}
+
+	/**
+	 * Expands the frontier chunks <code>[fromChunk, toChunk)</code>, storing
+	 * the nodes claimed from chunk <code>c</code> in
+	 * <code>discovered[c]</code>
+	 */
+	private static class ExpandTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ModelGraph graph;
+		private final AtomicLongArray visited;
+		private final int[] frontier;
+		private final int[][] discovered;
+		private final int fromChunk;
+		private final int toChunk;
+
+		private ExpandTask(ModelGraph graph, AtomicLongArray visited, int[] frontier, int[][] discovered, int fromChunk, int toChunk) {
+			this.graph = graph;
+			this.visited = visited;
+			this.frontier = frontier;
+			this.discovered = discovered;
+			this.fromChunk = fromChunk;
+			this.toChunk = toChunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (toChunk - fromChunk > 1) {
+				int middle = (fromChunk + toChunk) >>> 1;
+				invokeAll(new ExpandTask(graph, visited, frontier, discovered, fromChunk, middle),
+						new ExpandTask(graph, visited, frontier, discovered, middle, toChunk));
+			} else {
+				IntList claimed = new IntList();
+				for (int i = fromChunk * CHUNK_SIZE, end = Math.min(i + CHUNK_SIZE, frontier.length); i < end; i++) {
+					int node = frontier[i];
+					for (int edge = graph.edgeStart(node), last = graph.edgeEnd(node); edge < last; edge++) {
+						int target = graph.target(edge);
+						if (claim(visited, target)) {
+							claimed.add(target);
+						}
+					}
+				}
+				discovered[fromChunk] = claimed.toArray();
+			}
+		}
+	}
+}
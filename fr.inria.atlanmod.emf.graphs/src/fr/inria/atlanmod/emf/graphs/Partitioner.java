@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
+
+/**
+ * Splits the contents of a {@link Resource} into a number of fragments of
+ * balanced size, trying to minimize the references between fragments, and
+ * writes every fragment as a separate XMI {@link Resource}. References
+ * between fragments are serialized as <code>href</code>s, and objects
+ * contained by an object of another fragment are stored as roots of their
+ * own fragment (using containment proxies), so that fragments can be
+ * loaded lazily or in parallel.
+ * <p>
+ * Nodes are assigned in a single pass in document order with the Linear
+ * Deterministic Greedy heuristic of Stanton and Kliot ("Streaming Graph
+ * Partitioning for Large Distributed Graphs"): every node goes to the
+ * fragment holding most of its already assigned neighbors (predecessors or
+ * successors), weighted by the remaining capacity of the fragment
+ *
+ * @author agomez
+ *
+ */
+public class Partitioner {
+
+	/**
+	 * Default fraction by which fragments may exceed the average size
+	 */
+	public static final double DEFAULT_SLACK = 0.05;
+
+	private final int parts;
+	private final double slack;
+
+	/**
+	 * Creates a partitioner producing <code>parts</code> fragments, with the
+	 * {@link #DEFAULT_SLACK}
+	 */
+	public Partitioner(int parts) {
+		this(parts, DEFAULT_SLACK);
+	}
+
+	/**
+	 * Creates a partitioner producing <code>parts</code> fragments
+	 *
+	 * @param parts
+	 *            The number of fragments
+	 * @param slack
+	 *            The fraction by which fragments may exceed the average size
+	 */
+	public Partitioner(int parts, double slack) {
+		if (parts < 1) {
+			throw new IllegalArgumentException(String.valueOf(parts));
+		}
+		this.parts = parts;
+		this.slack = slack;
+	}
+
+	/**
+	 * @return The number of fragments
+	 */
+	public int getParts() {
+		return parts;
+	}
+
+	/**
+	 * Assigns every node of the {@link Resource} of <code>graph</code> to a
+	 * fragment. Nodes contained through references that do not resolve
+	 * proxies (which can not be split from their containers) are assigned
+	 * to the fragment of their container
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @return The fragment of every node in
+	 *         <code>[0, graph.resourceSize())</code>
+	 */
+	public int[] partition(ModelGraph graph) {
+		int resourceSize = graph.resourceSize();
+		ReverseGraph reverseGraph = graph.getReverseGraph();
+		int capacity = Math.max(1, (int) Math.ceil((double) resourceSize / parts * (1 + slack)));
+		int[] assignment = new int[resourceSize];
+		Arrays.fill(assignment, -1);
+		int[] sizes = new int[parts];
+		int[] neighbors = new int[parts];
+		for (int node = 0; node < resourceSize; node++) {
+			int container = reverseGraph.getContainer(node);
+			int part;
+			if (container >= 0 && container < resourceSize && isPinned(graph, node)) {
+				part = assignment[container];
+			} else {
+				Arrays.fill(neighbors, 0);
+				for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+					countNeighbor(graph, reverseGraph, assignment, neighbors, graph.target(edge));
+				}
+				for (int edge = reverseGraph.edgeStart(node), end = reverseGraph.edgeEnd(node); edge < end; edge++) {
+					countNeighbor(graph, reverseGraph, assignment, neighbors, reverseGraph.source(edge));
+				}
+				part = -1;
+				double bestScore = -1;
+				for (int candidate = 0; candidate < parts; candidate++) {
+					if (sizes[candidate] >= capacity) {
+						continue;
+					}
+					double score = neighbors[candidate] * (1 - (double) sizes[candidate] / capacity);
+					if (score > bestScore || (score == bestScore && sizes[candidate] < sizes[part])) {
+						part = candidate;
+						bestScore = score;
+					}
+				}
+				if (part == -1) {
+					// Pinned nodes may have filled all the fragments
+					part = 0;
+					for (int candidate = 1; candidate < parts; candidate++) {
+						if (sizes[candidate] < sizes[part]) {
+							part = candidate;
+						}
+					}
+				}
+			}
+			assignment[node] = part;
+			sizes[part]++;
+		}
+		return assignment;
+	}
+
+	/**
+	 * Counts <code>neighbor</code> in the fragment it is assigned to, if
+	 * any. The roots of the {@link Resource} are not counted: they usually
+	 * contain most of the model, and would attract every node to their
+	 * fragment
+	 */
+	private static void countNeighbor(ModelGraph graph, ReverseGraph reverseGraph, int[] assignment, int[] neighbors, int neighbor) {
+		if (neighbor < graph.resourceSize() && assignment[neighbor] >= 0 && reverseGraph.getContainer(neighbor) >= 0) {
+			neighbors[assignment[neighbor]]++;
+		}
+	}
+
+	private static boolean isPinned(ModelGraph graph, int node) {
+		EObject eObject = graph.getEObject(node);
+		if (eObject == null) {
+			return false;
+		}
+		EReference containmentFeature = eObject.eContainmentFeature();
+		return containmentFeature != null && !containmentFeature.isResolveProxies();
+	}
+
+	/**
+	 * Returns the number of nodes of every fragment
+	 */
+	public int[] getSizes(int[] assignment) {
+		int[] sizes = new int[parts];
+		for (int part : assignment) {
+			sizes[part]++;
+		}
+		return sizes;
+	}
+
+	/**
+	 * Returns the number of edges between nodes of the {@link Resource} of
+	 * <code>graph</code> that are assigned to different fragments
+	 */
+	public static int countCutEdges(ModelGraph graph, int[] assignment) {
+		int cut = 0;
+		for (int node = 0; node < assignment.length; node++) {
+			for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+				int target = graph.target(edge);
+				if (target < assignment.length && assignment[target] != assignment[node]) {
+					cut++;
+				}
+			}
+		}
+		return cut;
+	}
+
+	/**
+	 * Moves the contents of the {@link Resource} of <code>graph</code> to
+	 * one XMI {@link Resource} per fragment, and saves them in
+	 * <code>directory</code> as <code>&lt;name&gt;-&lt;i&gt;.xmi</code>. The
+	 * original {@link Resource} is left empty; the fragments are added to
+	 * its {@link ResourceSet}, if any. The XMI ids of the objects, if any,
+	 * are kept
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}, backed by {@link EObject}s
+	 * @param assignment
+	 *            The fragment of every node, as computed by
+	 *            {@link #partition(ModelGraph)}
+	 * @param directory
+	 *            The output directory
+	 * @return The fragments
+	 * @throws IOException
+	 *             If a fragment can not be saved
+	 */
+	public List<Resource> write(ModelGraph graph, int[] assignment, File directory) throws IOException {
+		int resourceSize = graph.resourceSize();
+		ReverseGraph reverseGraph = graph.getReverseGraph();
+		EObject[] eObjects = new EObject[resourceSize];
+		Resource resource = null;
+		for (int node = 0; node < resourceSize; node++) {
+			eObjects[node] = graph.getEObject(node);
+			if (eObjects[node] == null) {
+				throw new IllegalArgumentException("The graph is not backed by EObjects");
+			}
+			if (resource == null) {
+				resource = eObjects[node].eResource();
+			}
+		}
+		String[] ids = new String[resourceSize];
+		if (resource instanceof XMLResource) {
+			for (int node = 0; node < resourceSize; node++) {
+				ids[node] = ((XMLResource) resource).getID(eObjects[node]);
+			}
+		}
+
+		ResourceSet resourceSet = resource != null && resource.getResourceSet() != null ? resource.getResourceSet() : new ResourceSetImpl();
+		String name = graph.getURI().trimFileExtension().lastSegment();
+		List<Resource> fragments = new ArrayList<>(parts);
+		for (int part = 0; part < parts; part++) {
+			File file = new File(directory, name + "-" + part + ".xmi");
+			Resource fragment = new XMIResourceImpl(URI.createFileURI(file.getAbsolutePath()));
+			resourceSet.getResources().add(fragment);
+			fragments.add(fragment);
+		}
+
+		// Containers come before their contents in document order, so the
+		// roots of every fragment are added in document order too
+		for (int node = 0; node < resourceSize; node++) {
+			int container = reverseGraph.getContainer(node);
+			if (container < 0 || container >= resourceSize || assignment[container] != assignment[node]) {
+				fragments.get(assignment[node]).getContents().add(eObjects[node]);
+			}
+		}
+		for (int node = 0; node < resourceSize; node++) {
+			if (ids[node] != null) {
+				((XMLResource) fragments.get(assignment[node])).setID(eObjects[node], ids[node]);
+			}
+		}
+
+		directory.mkdirs();
+		for (Resource fragment : fragments) {
+			fragment.save(Collections.emptyMap());
+		}
+		return fragments;
+	}
+}
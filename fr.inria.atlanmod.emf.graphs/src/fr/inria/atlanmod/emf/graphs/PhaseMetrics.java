@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects the wall time, CPU time, allocated bytes, garbage collections
+ * and peak heap usage of the phases of an analysis. CPU time and allocated
+ * bytes are measured for the thread that runs the phase (allocated bytes
+ * are only available in JVMs providing
+ * <code>com.sun.management.ThreadMXBean</code>); garbage collections and
+ * peak heap usage are process-wide. When phases run concurrently (e.g. in
+ * batch mode), the latter are shared by all the overlapping phases, and
+ * such phases are reported as <code>processWide</code>
+ *
+ * @author agomez
+ *
+ */
+public class PhaseMetrics {
+
+	private static final Logger LOG = Logger.getLogger(PhaseMetrics.class.getName());
+
+	/**
+	 * Value of the measures that are not supported by the JVM
+	 */
+	public static final long UNAVAILABLE = -1;
+
+	private final List<Phase> phases = new ArrayList<>();
+
+	/**
+	 * Phases that have been started and not ended yet, guarded by
+	 * {@link #phases}
+	 */
+	private final List<Phase> running = new ArrayList<>();
+
+	/**
+	 * Starts a new phase in the current thread
+	 *
+	 * @param name
+	 *            The name of the phase; phases with the same name are
+	 *            aggregated in the log
+	 * @param detail
+	 *            Additional information about the phase (e.g. the traversal
+	 *            root), or <code>null</code>
+	 * @return The running {@link Phase}
+	 */
+	public Phase start(String name, String detail) {
+		return new Phase(name, detail);
+	}
+
+	/**
+	 * Logs the aggregated measures of every phase name, in order of first
+	 * appearance
+	 */
+	public void log() {
+		for (Phase total : aggregate().values()) {
+			LOG.log(Level.INFO, MessageFormat.format("Phase {0} ({1} runs): wall time {2} ({3} ms), CPU time {4} ms, allocated {5}, {6} GCs, peak heap {7}{8}",
+					total.name, total.runs, MessageUtil.formatMillis(toMillis(total.wallNanos)), toMillis(total.wallNanos), toMillis(total.cpuNanos),
+					total.allocatedBytes == UNAVAILABLE ? "n/a" : MessageUtil.byteCountToDisplaySize(total.allocatedBytes),
+					total.gcCount, MessageUtil.byteCountToDisplaySize(total.peakHeapBytes), total.processWide ? " (process-wide, runs overlapped other phases)" : ""));
+		}
+	}
+
+	/**
+	 * Writes all the phases, and their aggregated measures, as a JSON
+	 * document
+	 *
+	 * @param file
+	 *            The output file
+	 * @throws IOException
+	 *             If the file can not be written
+	 */
+	public void writeJson(File file) throws IOException {
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"))) {
+			writer.write("{\n  \"phases\": [");
+			List<Phase> snapshot;
+			synchronized (phases) {
+				snapshot = new ArrayList<>(phases);
+			}
+			for (int i = 0; i < snapshot.size(); i++) {
+				writer.write(i == 0 ? "\n    " : ",\n    ");
+				writeJson(writer, snapshot.get(i));
+			}
+			writer.write("\n  ],\n  \"totals\": [");
+			int i = 0;
+			for (Phase total : aggregate().values()) {
+				writer.write(i++ == 0 ? "\n    " : ",\n    ");
+				writeJson(writer, total);
+			}
+			writer.write("\n  ]\n}\n");
+		}
+	}
+
+	private Map<String, Phase> aggregate() {
+		Map<String, Phase> totals = new LinkedHashMap<>();
+		synchronized (phases) {
+			for (Phase phase : phases) {
+				Phase total = totals.get(phase.name);
+				if (total == null) {
+					total = new Phase(phase.name);
+					totals.put(phase.name, total);
+				}
+				total.add(phase);
+			}
+		}
+		return totals;
+	}
+
+	private static void writeJson(Writer writer, Phase phase) throws IOException {
+		writer.write("{\"name\": ");
+		writer.write(quote(phase.name));
+		if (phase.detail != null) {
+			writer.write(", \"detail\": ");
+			writer.write(quote(phase.detail));
+		}
+		writer.write(MessageFormat.format(", \"runs\": {0,number,#}, \"wallNanos\": {1,number,#}, \"cpuNanos\": {2,number,#}, \"allocatedBytes\": {3,number,#}, "
+				+ "\"gcCount\": {4,number,#}, \"gcMillis\": {5,number,#}, \"peakHeapBytes\": {6,number,#}, \"processWide\": {7}'}'",
+				phase.runs, phase.wallNanos, phase.cpuNanos, phase.allocatedBytes, phase.gcCount, phase.gcMillis, phase.peakHeapBytes, String.valueOf(phase.processWide)));
+	}
+
+	/**
+	 * Returns <code>string</code> as a JSON string literal
+	 */
+	static String quote(String string) {
+		StringBuilder builder = new StringBuilder("\"");
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c == '"' || c == '\\') {
+				builder.append('\\').append(c);
+			} else if (c < 0x20) {
+				builder.append(String.format("\\u%04x", (int) c));
+			} else {
+				builder.append(c);
+			}
+		}
+		return builder.append('"').toString();
+	}
+
+	private static long toMillis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	private static long cpuTime(ThreadMXBean threads) {
+		return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : UNAVAILABLE;
+	}
+
+	private static long allocatedBytes(ThreadMXBean threads) {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+			if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+				return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return UNAVAILABLE;
+	}
+
+	/**
+	 * A phase of the analysis
+	 */
+	public class Phase {
+
+		private final String name;
+		private final String detail;
+		private int runs;
+		private long wallNanos;
+		private long cpuNanos;
+		private long allocatedBytes;
+		private long gcCount;
+		private long gcMillis;
+		private long peakHeapBytes;
+		/**
+		 * Whether this phase overlapped other phases, so that its garbage
+		 * collections and peak heap usage also account for them
+		 */
+		private boolean processWide;
+
+		/**
+		 * Creates an (empty) aggregate of the phases named
+		 * <code>name</code>
+		 */
+		private Phase(String name) {
+			this.name = name;
+			this.detail = null;
+		}
+
+		/**
+		 * Creates and starts a phase
+		 */
+		private Phase(String name, String detail) {
+			this.name = name;
+			this.detail = detail;
+			synchronized (phases) {
+				// Resetting the peaks would lose those of the running phases
+				if (running.isEmpty()) {
+					for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+						if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+							pool.resetPeakUsage();
+						}
+					}
+				} else {
+					processWide = true;
+					for (Phase phase : running) {
+						phase.processWide = true;
+					}
+				}
+				running.add(this);
+			}
+			ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+				gcCount -= Math.max(0, collector.getCollectionCount());
+				gcMillis -= Math.max(0, collector.getCollectionTime());
+			}
+			allocatedBytes = allocatedBytes(threads);
+			cpuNanos = cpuTime(threads);
+			wallNanos = -System.nanoTime();
+		}
+
+		/**
+		 * Ends this phase and records its measures
+		 */
+		public void end() {
+			wallNanos += System.nanoTime();
+			ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			long cpu = cpuTime(threads);
+			cpuNanos = cpu == UNAVAILABLE || cpuNanos == UNAVAILABLE ? UNAVAILABLE : cpu - cpuNanos;
+			long allocated = allocatedBytes(threads);
+			allocatedBytes = allocated == UNAVAILABLE || allocatedBytes == UNAVAILABLE ? UNAVAILABLE : allocated - allocatedBytes;
+			for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+				gcCount += Math.max(0, collector.getCollectionCount());
+				gcMillis += Math.max(0, collector.getCollectionTime());
+			}
+			// Upper bound: the pools may not reach their peaks at once
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+					peakHeapBytes += pool.getPeakUsage().getUsed();
+				}
+			}
+			runs = 1;
+			synchronized (phases) {
+				running.remove(this);
+				phases.add(this);
+			}
+		}
+
+		/**
+		 * Adds the measures of <code>phase</code> to this aggregate; peak
+		 * heap usage is the maximum of both, and the aggregate is
+		 * process-wide if any of them is
+		 */
+		private void add(Phase phase) {
+			runs += phase.runs;
+			wallNanos += phase.wallNanos;
+			cpuNanos = cpuNanos == UNAVAILABLE || phase.cpuNanos == UNAVAILABLE ? UNAVAILABLE : cpuNanos + phase.cpuNanos;
+			allocatedBytes = allocatedBytes == UNAVAILABLE || phase.allocatedBytes == UNAVAILABLE ? UNAVAILABLE : allocatedBytes + phase.allocatedBytes;
+			gcCount += phase.gcCount;
+			gcMillis += phase.gcMillis;
+			peakHeapBytes = Math.max(peakHeapBytes, phase.peakHeapBytes);
+			processWide |= phase.processWide;
+		}
+	}
+}
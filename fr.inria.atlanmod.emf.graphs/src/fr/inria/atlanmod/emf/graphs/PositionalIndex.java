@@ -0,0 +1,579 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.impl.BasicEObjectImpl;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
+import org.eclipse.emf.ecore.util.EContentsEList;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.util.InternalEList;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMLResourceImpl;
+
+/**
+ * Position of every node of a {@link ModelGraph} in the containment tree of
+ * its {@link Resource}: its container, the name of its containing feature
+ * and its index in that feature. It allows building the position-based URI
+ * fragment of a node (e.g. <code>//@elements.3/@storeys.0</code>) in
+ * <code>O(depth)</code>, without the {@link EObject} of the node
+ *
+ * @author agomez
+ *
+ */
+public class PositionalIndex {
+
+	/**
+	 * Container of the nodes that are roots of the {@link Resource}
+	 */
+	public static final int NO_CONTAINER = -1;
+
+	/**
+	 * Position of the nodes contained by single-valued features
+	 */
+	public static final int SINGLE_VALUED = -1;
+
+	private final int[] containers;
+	private final int[] features;
+	private final int[] positions;
+	private final String[] featureNames;
+	private final int rootCount;
+	private final String[] ids;
+	private volatile Children children;
+
+	/**
+	 * Creates a new index
+	 *
+	 * @param containers
+	 *            The container of every node, or {@link #NO_CONTAINER}
+	 * @param features
+	 *            The containing feature of every node, as an index in
+	 *            <code>featureNames</code>; ignored for roots
+	 * @param positions
+	 *            The index of every node in its containing feature, or
+	 *            {@link #SINGLE_VALUED}; for roots, the index in the
+	 *            contents of the {@link Resource}
+	 * @param featureNames
+	 *            The names of the containing features
+	 * @param rootCount
+	 *            The number of roots of the {@link Resource}
+	 * @param ids
+	 *            The identifier of every node, used as its fragment instead
+	 *            of its position if not <code>null</code>; the array itself
+	 *            may be <code>null</code> if no node has an identifier
+	 */
+	public PositionalIndex(int[] containers, int[] features, int[] positions, String[] featureNames, int rootCount, String[] ids) {
+		this.containers = containers;
+		this.features = features;
+		this.positions = positions;
+		this.featureNames = featureNames;
+		this.rootCount = rootCount;
+		this.ids = ids;
+	}
+
+	/**
+	 * Computes the {@link PositionalIndex} of the objects of a
+	 * {@link Resource} without resolving proxies, and numbers them in
+	 * <code>nodes</code> (roots first, then breadth-first). Objects contained
+	 * through containment proxies, or stored in other {@link Resource}s, are
+	 * skipped, but they still count for the positions of their siblings
+	 *
+	 * @param resource
+	 *            The {@link Resource}
+	 * @param nodes
+	 *            An empty map, where the node of every object is stored
+	 * @return The {@link PositionalIndex} of the objects of
+	 *         <code>resource</code>
+	 */
+	static PositionalIndex build(Resource resource, IdentityIntMap<EObject> nodes) {
+		List<EObject> eObjects = new ArrayList<>();
+		IntList containers = new IntList();
+		IntList features = new IntList();
+		IntList positions = new IntList();
+		String[] ids = null;
+		FeatureNames featureNames = new FeatureNames();
+		EList<EObject> contents = resource.getContents();
+		int rootCount = contents.size();
+		for (int i = 0; i < rootCount; i++) {
+			EObject root = ((InternalEList<EObject>) contents).basicGet(i);
+			nodes.put(root, eObjects.size());
+			eObjects.add(root);
+			containers.add(NO_CONTAINER);
+			features.add(0);
+			positions.add(i);
+		}
+		for (int node = 0; node < eObjects.size(); node++) {
+			EObject eObject = eObjects.get(node);
+			EStructuralFeature lastFeature = null;
+			int position = -1;
+			for (EContentsEList.FeatureIterator<EObject> it = (EContentsEList.FeatureIterator<EObject>) ((InternalEList<EObject>) eObject.eContents()).basicIterator(); it.hasNext();) {
+				InternalEObject child = (InternalEObject) it.next();
+				EStructuralFeature feature = it.feature();
+				position = feature == lastFeature ? position + 1 : 0;
+				lastFeature = feature;
+				if (!child.eIsProxy() && child.eDirectResource() == null) {
+					nodes.put(child, eObjects.size());
+					eObjects.add(child);
+					containers.add(node);
+					features.add(featureNames.intern(feature.getName()));
+					positions.add(feature.isMany() ? position : SINGLE_VALUED);
+				}
+			}
+		}
+		for (int node = 0; node < eObjects.size(); node++) {
+			ids = putId(ids, node, getId(resource, eObjects.get(node)));
+		}
+		return new PositionalIndex(containers.toArray(), features.toArray(), positions.toArray(), featureNames.toArray(), rootCount,
+				ids != null ? Arrays.copyOf(ids, eObjects.size()) : null);
+	}
+
+	/**
+	 * Returns the identifier of <code>eObject</code>, as used in the
+	 * fragments of <code>resource</code>, or <code>null</code>
+	 */
+	private static String getId(Resource resource, EObject eObject) {
+		String id = resource instanceof XMLResource ? ((XMLResource) resource).getID(eObject) : null;
+		return id != null ? id : EcoreUtil.getID(eObject);
+	}
+
+	/**
+	 * Stores the identifier of <code>node</code> in <code>ids</code>, which
+	 * is allocated or grown if needed
+	 *
+	 * @return The array of identifiers, or <code>null</code> if there are
+	 *         no identifiers yet
+	 */
+	private static String[] putId(String[] ids, int node, String id) {
+		if (id == null) {
+			return ids;
+		} else if (ids == null) {
+			ids = new String[Math.max(1024, node + 1)];
+		} else if (node >= ids.length) {
+			ids = Arrays.copyOf(ids, Math.max(ids.length * 2, node + 1));
+		}
+		ids[node] = id;
+		return ids;
+	}
+
+	public int getContainer(int node) {
+		return containers[node];
+	}
+
+	public int getFeature(int node) {
+		return features[node];
+	}
+
+	public int getPosition(int node) {
+		return positions[node];
+	}
+
+	public String getFeatureName(int feature) {
+		return featureNames[feature];
+	}
+
+	public int getFeatureCount() {
+		return featureNames.length;
+	}
+
+	public int getRootCount() {
+		return rootCount;
+	}
+
+	/**
+	 * Returns the identifier of <code>node</code>, or <code>null</code> if
+	 * it has no identifier
+	 */
+	public String getId(int node) {
+		return ids != null ? ids[node] : null;
+	}
+
+	/**
+	 * Returns the URI fragment of <code>node</code>: its identifier if it
+	 * has one, or its position-based fragment otherwise
+	 *
+	 * @param node
+	 *            The node
+	 * @return The URI fragment
+	 */
+	public String getURIFragment(int node) {
+		String id = getId(node);
+		if (id != null) {
+			return id;
+		}
+		int depth = 0;
+		for (int current = node; containers[current] != NO_CONTAINER; current = containers[current]) {
+			depth++;
+		}
+		int[] path = new int[depth + 1];
+		for (int current = node, i = depth; i >= 0; current = containers[current], i--) {
+			path[i] = current;
+		}
+		StringBuilder builder = new StringBuilder();
+		builder.append('/');
+		if (rootCount > 1) {
+			builder.append(positions[path[0]]);
+		}
+		for (int i = 1; i < path.length; i++) {
+			int current = path[i];
+			builder.append("/@").append(featureNames[features[current]]);
+			if (positions[current] != SINGLE_VALUED) {
+				builder.append('.').append(positions[current]);
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Returns the node whose URI fragment is <code>uriFragment</code>, either
+	 * an identifier or a position-based fragment, or <code>-1</code> if
+	 * there is none. Position-based fragments are walked down from the root
+	 * in <code>O(depth)</code> lookups, using an index of the children of
+	 * every node that is computed on first use
+	 *
+	 * @param uriFragment
+	 *            The URI fragment
+	 * @return The node, or <code>-1</code>
+	 */
+	public int getNode(String uriFragment) {
+		Children result = getChildren();
+		if (!uriFragment.startsWith("/")) {
+			Integer node = result.idNodes.get(uriFragment);
+			return node != null ? node : -1;
+		}
+		int slash = uriFragment.indexOf('/', 1);
+		String rootSegment = slash < 0 ? uriFragment.substring(1) : uriFragment.substring(1, slash);
+		try {
+			int node = getChild(NO_CONTAINER, -1, rootSegment.isEmpty() ? 0 : Integer.parseInt(rootSegment));
+			while (slash >= 0 && node != -1) {
+				int next = uriFragment.indexOf('/', slash + 1);
+				String segment = next < 0 ? uriFragment.substring(slash + 1) : uriFragment.substring(slash + 1, next);
+				if (!segment.startsWith("@") || segment.indexOf('[') >= 0) {
+					// Key-based and custom segments
+					return -1;
+				}
+				int dot = segment.lastIndexOf('.');
+				Integer feature = result.featureIds.get(dot < 0 ? segment.substring(1) : segment.substring(1, dot));
+				if (feature == null) {
+					return -1;
+				}
+				node = getChild(node, feature, dot < 0 ? SINGLE_VALUED : Integer.parseInt(segment.substring(dot + 1)));
+				slash = next;
+			}
+			return node;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns the child of <code>node</code> at <code>position</code> of the
+	 * containing feature <code>feature</code>, or <code>-1</code> if there
+	 * is none. The roots are the children of {@link #NO_CONTAINER}, of any
+	 * feature
+	 *
+	 * @param node
+	 *            The container, or {@link #NO_CONTAINER}
+	 * @param feature
+	 *            The containing feature, as an index in the feature names
+	 * @param position
+	 *            The position, or {@link #SINGLE_VALUED}
+	 * @return The child, or <code>-1</code>
+	 */
+	int getChild(int node, int feature, int position) {
+		return getChildren().find(node == NO_CONTAINER ? containers.length : node, feature, position);
+	}
+
+	/**
+	 * Returns the index of the children of every node, computed on first use
+	 */
+	private Children getChildren() {
+		Children result = children;
+		if (result == null) {
+			synchronized (this) {
+				result = children;
+				if (result == null) {
+					result = new Children();
+					children = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Builds the {@link PositionalIndex} of the contents of a
+	 * {@link Resource} while they are numbered in
+	 * {@link Resource#getAllContents()} order, i.e., every object right after
+	 * its container, and siblings in order. The last containing feature and
+	 * position of the objects of the current branch are tracked, so
+	 * positions are obtained without searching the containment lists.
+	 * <p>
+	 * Some objects do not have a position-based fragment: proxies, objects
+	 * stored in other {@link Resource}s (cross-resource containment),
+	 * objects contained through references with keys, objects whose
+	 * container builds its own fragment segments (e.g.,
+	 * {@link org.eclipse.emf.ecore.EModelElement}s), and their contents.
+	 * They are recorded in {@link #getCustomFragments()}, and their fragments
+	 * must be computed by the {@link Resource}
+	 */
+	static final class Builder {
+
+		private final Resource resource;
+		private final IntList containers = new IntList(1024);
+		private final IntList features = new IntList(1024);
+		private final IntList positions = new IntList(1024);
+		private String[] ids;
+		private final FeatureNames featureNames = new FeatureNames();
+		private final BitSet customFragments = new BitSet();
+		private final Map<Class<?>, Boolean> customSegments = new HashMap<>();
+		private int rootCount;
+
+		// Current branch: node, and last containing feature and position of
+		// its children
+		private final IntList frameNodes = new IntList();
+		private final IntList frameFeatures = new IntList();
+		private final IntList framePositions = new IntList();
+
+		Builder(Resource resource) {
+			this.resource = resource;
+		}
+
+		/**
+		 * Returns whether the {@link Resource} computes fragments as
+		 * {@link ResourceImpl} does (after looking for identifiers, as
+		 * {@link XMLResourceImpl} does), so that the index gives the same
+		 * fragments
+		 */
+		boolean isSupported() {
+			try {
+				Class<?> declaringClass = resource.getClass().getMethod("getURIFragment", EObject.class).getDeclaringClass();
+				return declaringClass == ResourceImpl.class || declaringClass == XMLResourceImpl.class;
+			} catch (NoSuchMethodException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * Adds the next object of the {@link Resource}
+		 *
+		 * @param eObject
+		 *            The object
+		 * @param container
+		 *            The node of its container, already added, or
+		 *            {@link PositionalIndex#NO_CONTAINER} for the roots of
+		 *            the {@link Resource}, even if they are contained by an
+		 *            object of another resource
+		 */
+		void add(InternalEObject eObject, int container) {
+			int node = containers.size();
+			if (container == NO_CONTAINER) {
+				// A root may also be contained by an object of another
+				// resource, in which case the current branch goes on after it
+				if (eObject.eInternalContainer() == null) {
+					frameNodes.clear();
+					frameFeatures.clear();
+					framePositions.clear();
+				}
+				List<EObject> contents = resource.getContents();
+				int position = rootCount < contents.size() && ((InternalEList<EObject>) contents).basicGet(rootCount) == eObject ? rootCount
+						: contents.indexOf(eObject);
+				rootCount++;
+				containers.add(NO_CONTAINER);
+				features.add(0);
+				positions.add(position);
+			} else {
+				int frame = frameNodes.size() - 1;
+				while (frameNodes.get(frame) != container) {
+					frame--;
+				}
+				frameNodes.truncate(frame + 1);
+				frameFeatures.truncate(frame + 1);
+				framePositions.truncate(frame + 1);
+				EStructuralFeature feature = eObject.eContainingFeature();
+				int featureId = featureNames.intern(feature.getName());
+				int position = SINGLE_VALUED;
+				if (feature.isMany()) {
+					position = frameFeatures.get(frame) == featureId ? framePositions.get(frame) + 1 : 0;
+					frameFeatures.set(frame, featureId);
+					framePositions.set(frame, position);
+				}
+				containers.add(container);
+				features.add(featureId);
+				positions.add(position);
+				if (customFragments.get(container) || eObject.eDirectResource() != null
+						|| feature instanceof EReference && !((EReference) feature).getEKeys().isEmpty()
+						|| hasCustomSegments(eObject.eInternalContainer())) {
+					customFragments.set(node);
+				}
+			}
+			if (eObject.eIsProxy()) {
+				customFragments.set(node);
+			}
+			frameNodes.add(node);
+			frameFeatures.add(-1);
+			framePositions.add(-1);
+			ids = putId(ids, node, getId(resource, eObject));
+		}
+
+		/**
+		 * Returns whether the fragment segments of the contents of
+		 * <code>eObject</code> are not the default ones of
+		 * {@link BasicEObjectImpl}
+		 */
+		private boolean hasCustomSegments(EObject eObject) {
+			Class<?> type = eObject.getClass();
+			Boolean custom = customSegments.get(type);
+			if (custom == null) {
+				try {
+					custom = type.getMethod("eURIFragmentSegment", EStructuralFeature.class, EObject.class).getDeclaringClass() != BasicEObjectImpl.class;
+				} catch (NoSuchMethodException e) {
+					custom = true;
+				}
+				customSegments.put(type, custom);
+			}
+			return custom;
+		}
+
+		/**
+		 * @return The nodes whose fragment is not given by the index
+		 */
+		BitSet getCustomFragments() {
+			return customFragments;
+		}
+
+		/**
+		 * @return The {@link PositionalIndex} of the added objects
+		 */
+		PositionalIndex build() {
+			int size = containers.size();
+			return new PositionalIndex(containers.toArray(), features.toArray(), positions.toArray(), featureNames.toArray(), rootCount,
+					ids != null ? Arrays.copyOf(ids, size) : null);
+		}
+	}
+
+	/**
+	 * Children of every node in CSR form, in node order (i.e., siblings in
+	 * order), split into runs of children contained by the same feature.
+	 * Roots are the children of an extra node, in a single run
+	 */
+	private class Children {
+		private final int[] childOffsets;
+		private final int[] childNodes;
+		private final int[] runOffsets;
+		private final IntList runStarts = new IntList();
+		private final Map<String, Integer> featureIds = new HashMap<>();
+		private final Map<String, Integer> idNodes = new HashMap<>();
+
+		private Children() {
+			int size = containers.length;
+			childOffsets = new int[size + 2];
+			for (int node = 0; node < size; node++) {
+				childOffsets[parent(node) + 1]++;
+			}
+			for (int node = 0; node <= size; node++) {
+				childOffsets[node + 1] += childOffsets[node];
+			}
+			childNodes = new int[size];
+			int[] fill = Arrays.copyOf(childOffsets, size + 1);
+			for (int node = 0; node < size; node++) {
+				childNodes[fill[parent(node)]++] = node;
+			}
+			runOffsets = new int[size + 2];
+			for (int node = 0; node <= size; node++) {
+				runOffsets[node] = runStarts.size();
+				for (int child = childOffsets[node]; child < childOffsets[node + 1]; child++) {
+					if (child == childOffsets[node] || (node < size && features[childNodes[child]] != features[childNodes[child - 1]])) {
+						runStarts.add(child);
+					}
+				}
+			}
+			runOffsets[size + 1] = runStarts.size();
+			for (int feature = 0; feature < featureNames.length; feature++) {
+				featureIds.put(featureNames[feature], feature);
+			}
+			if (ids != null) {
+				for (int node = 0; node < size; node++) {
+					if (ids[node] != null && !idNodes.containsKey(ids[node])) {
+						idNodes.put(ids[node], node);
+					}
+				}
+			}
+		}
+
+		private int parent(int node) {
+			return containers[node] == NO_CONTAINER ? containers.length : containers[node];
+		}
+
+		/**
+		 * Returns the child of <code>node</code> at <code>position</code> of
+		 * <code>feature</code> (any feature for the roots), or
+		 * <code>-1</code>. Positions are increasing along a run, but may
+		 * have gaps, so the run is binary searched
+		 */
+		private int find(int node, int feature, int position) {
+			for (int run = runOffsets[node]; run < runOffsets[node + 1]; run++) {
+				int low = runStarts.get(run);
+				if (node < containers.length && features[childNodes[low]] != feature) {
+					continue;
+				}
+				int high = (run + 1 < runOffsets[node + 1] ? runStarts.get(run + 1) : childOffsets[node + 1]) - 1;
+				while (low <= high) {
+					int middle = (low + high) >>> 1;
+					int middlePosition = positions[childNodes[middle]];
+					if (middlePosition < position) {
+						low = middle + 1;
+					} else if (middlePosition > position) {
+						high = middle - 1;
+					} else {
+						return childNodes[middle];
+					}
+				}
+				return -1;
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * Table of the names of the containing features, numbered in order of
+	 * appearance
+	 */
+	private static class FeatureNames {
+		private final Map<String, Integer> ids = new HashMap<>();
+		private final List<String> names = new ArrayList<>();
+
+		private int intern(String name) {
+			Integer id = ids.get(name);
+			if (id == null) {
+				id = names.size();
+				ids.put(name, id);
+				names.add(name);
+			}
+			return id;
+		}
+
+		private String[] toArray() {
+			return names.toArray(new String[names.size()]);
+		}
+	}
+}
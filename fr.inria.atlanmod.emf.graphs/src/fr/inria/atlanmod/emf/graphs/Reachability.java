@@ -0,0 +1,405 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+
+/**
+ * Reachability algorithms over a {@link ModelGraph}
+ *
+ * @author agomez
+ *
+ */
+public class Reachability {
+
+	private Reachability() {
+	}
+
+	/**
+	 * Returns the set of nodes that can be reached from <code>root</code>
+	 * (including <code>root</code> itself) by means of a breadth-first
+	 * traversal of the graph
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param root
+	 *            The initial node
+	 * @return The {@link BitSet} of reachable nodes
+	 */
+	public static BitSet getReachableNodes(ModelGraph graph, int root) {
+		return getReachableNodes(graph, root, IntArray.wrap(new int[graph.size()]));
+	}
+
+	/**
+	 * Returns the set of nodes that can be reached from <code>root</code>,
+	 * using <code>queue</code> as the queue of the traversal. The queue may
+	 * be allocated once, outside of the heap, and reused by every traversal
+	 * of the graph
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param root
+	 *            The initial node
+	 * @param queue
+	 *            An array with (at least) an element per node
+	 * @return The {@link BitSet} of reachable nodes
+	 */
+	static BitSet getReachableNodes(ModelGraph graph, int root, IntArray queue) {
+		BitSet visited = new BitSet(graph.size());
+		// Nodes are marked when enqueued, so every node is enqueued at most once
+		int head = 0;
+		int tail = 0;
+		visited.set(root);
+		queue.set(tail++, root);
+		while (head < tail) {
+			int node = queue.get(head++);
+			for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+				int target = graph.target(edge);
+				if (!visited.get(target)) {
+					visited.set(target);
+					queue.set(tail++, target);
+				}
+			}
+		}
+		return visited;
+	}
+
+	/**
+	 * Returns the set of nodes from which <code>node</code> can be reached
+	 * (including <code>node</code> itself), by means of a breadth-first
+	 * traversal of the {@link ReverseGraph} of <code>graph</code>. The queue
+	 * grows with the visited nodes, so queries on small neighborhoods do
+	 * not allocate space proportional to the graph
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param node
+	 *            The target node
+	 * @return The {@link BitSet} of nodes reaching <code>node</code>
+	 */
+	public static BitSet getReachingNodes(ModelGraph graph, int node) {
+		ReverseGraph reverseGraph = graph.getReverseGraph();
+		BitSet visited = new BitSet();
+		IntList queue = new IntList();
+		visited.set(node);
+		queue.add(node);
+		for (int head = 0; head < queue.size(); head++) {
+			int current = queue.get(head);
+			for (int edge = reverseGraph.edgeStart(current), end = reverseGraph.edgeEnd(current); edge < end; edge++) {
+				int source = reverseGraph.source(edge);
+				if (!visited.get(source)) {
+					visited.set(source);
+					queue.add(source);
+				}
+			}
+		}
+		return visited;
+	}
+
+	/**
+	 * Returns the nodes of <code>roots</code> from which <code>node</code>
+	 * can be reached. The backward traversal stops as soon as all the roots
+	 * have been found
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param roots
+	 *            The candidate roots
+	 * @param node
+	 *            The target node
+	 * @return The roots reaching <code>node</code>, in the same order as
+	 *         <code>roots</code>
+	 */
+	public static int[] getReachingRoots(ModelGraph graph, int[] roots, int node) {
+		ReverseGraph reverseGraph = graph.getReverseGraph();
+		BitSet pending = new BitSet();
+		for (int root : roots) {
+			pending.set(root);
+		}
+		BitSet found = new BitSet();
+		BitSet visited = new BitSet();
+		IntList queue = new IntList();
+		visited.set(node);
+		queue.add(node);
+		for (int head = 0; head < queue.size() && !pending.isEmpty(); head++) {
+			int current = queue.get(head);
+			if (pending.get(current)) {
+				pending.clear(current);
+				found.set(current);
+			}
+			for (int edge = reverseGraph.edgeStart(current), end = reverseGraph.edgeEnd(current); edge < end; edge++) {
+				int source = reverseGraph.source(edge);
+				if (!visited.get(source)) {
+					visited.set(source);
+					queue.add(source);
+				}
+			}
+		}
+		IntList result = new IntList(roots.length);
+		for (int root : roots) {
+			if (found.get(root)) {
+				result.add(root);
+			}
+		}
+		return result.toArray();
+	}
+
+	/**
+	 * Maximum number of roots that can be traversed together by
+	 * {@link #getReachableLanes(ModelGraph, int[], int)}
+	 */
+	public static final int LANES = Long.SIZE;
+
+	/**
+	 * Computes, in a single sweep, the nodes reachable from up to
+	 * {@link #LANES} roots. Every root owns one bit lane of a per-node
+	 * <code>long</code> word, and a node is re-expanded only when it gains
+	 * lanes that its successors do not have yet, so all the roots propagate
+	 * together instead of traversing the graph once per root.
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param roots
+	 *            The initial nodes
+	 * @param offset
+	 *            Index in <code>roots</code> of the root that owns lane
+	 *            <code>0</code>; roots <code>[offset, offset + LANES)</code>
+	 *            are traversed
+	 * @return The lane words: bit <code>k</code> of element <code>n</code>
+	 *         is set if node <code>n</code> is reachable from
+	 *         <code>roots[offset + k]</code>
+	 */
+	public static long[] getReachableLanes(ModelGraph graph, int[] roots, int offset) {
+		long[] lanes = new long[graph.size()];
+		getReachableLanes(graph, roots, offset, LongArray.wrap(lanes), IntArray.wrap(new int[graph.size()]));
+		return lanes;
+	}
+
+	/**
+	 * Computes, in a single sweep, the nodes reachable from up to
+	 * {@link #LANES} roots, as
+	 * {@link #getReachableLanes(ModelGraph, int[], int)}, into
+	 * <code>lanes</code> and using <code>queue</code> as the queue of the
+	 * traversal. Both arrays may be allocated once, outside of the heap, and
+	 * reused by every group of roots
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param roots
+	 *            The initial nodes
+	 * @param offset
+	 *            Index in <code>roots</code> of the root that owns lane
+	 *            <code>0</code>
+	 * @param lanes
+	 *            An array with an element per node, where the lane words
+	 *            are stored (it is cleared first)
+	 * @param queue
+	 *            An array with an element per node
+	 */
+	static void getReachableLanes(ModelGraph graph, int[] roots, int offset, LongArray lanes, IntArray queue) {
+		int size = graph.size();
+		lanes.clear();
+		BitSet queued = new BitSet(size);
+		// Circular queue: a node is never queued twice at the same time
+		int head = 0;
+		int count = 0;
+		for (int lane = 0; lane < LANES && offset + lane < roots.length; lane++) {
+			int root = roots[offset + lane];
+			lanes.set(root, lanes.get(root) | 1L << lane);
+			if (!queued.get(root)) {
+				queued.set(root);
+				queue.set((head + count++) % size, root);
+			}
+		}
+		while (count > 0) {
+			int node = queue.get(head);
+			head = (head + 1) % size;
+			count--;
+			queued.clear(node);
+			long word = lanes.get(node);
+			for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+				int target = graph.target(edge);
+				long targetWord = lanes.get(target);
+				long added = word & ~targetWord;
+				if (added != 0) {
+					lanes.set(target, targetWord | added);
+					if (!queued.get(target)) {
+						queued.set(target);
+						queue.set((head + count++) % size, target);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the set of nodes whose lane words have bit <code>lane</code>
+	 * set
+	 *
+	 * @param lanes
+	 *            The lane words computed by
+	 *            {@link #getReachableLanes(ModelGraph, int[], int)}
+	 * @param lane
+	 *            The lane
+	 * @return The {@link BitSet} of nodes reachable from the root that owns
+	 *         <code>lane</code>
+	 */
+	public static BitSet getLane(long[] lanes, int lane) {
+		return getLane(LongArray.wrap(lanes), lane);
+	}
+
+	/**
+	 * Returns the set of nodes whose lane words have bit <code>lane</code>
+	 * set
+	 */
+	static BitSet getLane(LongArray lanes, int lane) {
+		BitSet nodes = new BitSet(lanes.length());
+		long mask = 1L << lane;
+		for (int node = 0, length = lanes.length(); node < length; node++) {
+			if ((lanes.get(node) & mask) != 0) {
+				nodes.set(node);
+			}
+		}
+		return nodes;
+	}
+
+	/**
+	 * Returns the number of nodes reachable from every root in
+	 * <code>roots</code>, traversing the graph once per group of
+	 * {@link #LANES} roots
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param roots
+	 *            The initial nodes
+	 * @return The reachable counts, in the same order as <code>roots</code>
+	 */
+	public static int[] countReachableNodes(ModelGraph graph, int[] roots) {
+		int[] counts = new int[roots.length];
+		for (int offset = 0; offset < roots.length; offset += LANES) {
+			countLanes(getReachableLanes(graph, roots, offset), counts, offset);
+		}
+		return counts;
+	}
+
+	/**
+	 * Adds to <code>counts[offset + k]</code> the number of nodes whose lane
+	 * words have bit <code>k</code> set
+	 *
+	 * @param lanes
+	 *            The lane words computed by
+	 *            {@link #getReachableLanes(ModelGraph, int[], int)}
+	 * @param counts
+	 *            The per-root counts
+	 * @param offset
+	 *            Index in <code>counts</code> of lane <code>0</code>
+	 */
+	public static void countLanes(long[] lanes, int[] counts, int offset) {
+		countLanes(LongArray.wrap(lanes), counts, offset);
+	}
+
+	/**
+	 * Adds to <code>counts[offset + k]</code> the number of nodes whose lane
+	 * words have bit <code>k</code> set
+	 */
+	static void countLanes(LongArray lanes, int[] counts, int offset) {
+		for (int node = 0, length = lanes.length(); node < length; node++) {
+			for (long word = lanes.get(node); word != 0; word &= word - 1) {
+				counts[offset + Long.numberOfTrailingZeros(word)]++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the nodes of the {@link Resource} of <code>graph</code> that
+	 * are not in <code>reachableNodes</code>, i.e., the complement of
+	 * <code>reachableNodes</code> in <code>[0, graph.resourceSize())</code>
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param reachableNodes
+	 *            The reachable nodes
+	 * @return The {@link BitSet} of unreachable nodes
+	 */
+	public static BitSet getUnreachableNodes(ModelGraph graph, BitSet reachableNodes) {
+		BitSet unreachableNodes = new BitSet(graph.resourceSize());
+		unreachableNodes.set(0, graph.resourceSize());
+		unreachableNodes.andNot(reachableNodes);
+		return unreachableNodes;
+	}
+
+	/**
+	 * Returns the number of nodes of the {@link Resource} of
+	 * <code>graph</code> that are not in <code>reachableNodes</code>
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param reachableNodes
+	 *            The reachable nodes
+	 * @return The number of unreachable nodes
+	 */
+	public static int countUnreachableNodes(ModelGraph graph, BitSet reachableNodes) {
+		int externalNodes = 0;
+		for (int node = reachableNodes.nextSetBit(graph.resourceSize()); node >= 0; node = reachableNodes.nextSetBit(node + 1)) {
+			externalNodes++;
+		}
+		return graph.resourceSize() - (reachableNodes.cardinality() - externalNodes);
+	}
+
+	/**
+	 * Returns an {@link Iterable} over the {@link EObject}s of the
+	 * {@link Resource} of <code>graph</code> whose nodes are not in
+	 * <code>reachableNodes</code>. Elements are computed while iterating,
+	 * in {@link Resource#getAllContents()} order, so no collection is
+	 * materialized
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param reachableNodes
+	 *            The reachable nodes
+	 * @return The unreachable {@link EObject}s
+	 */
+	public static Iterable<EObject> unreachableEObjects(final ModelGraph graph, final BitSet reachableNodes) {
+		return new Iterable<EObject>() {
+			@Override
+			public Iterator<EObject> iterator() {
+				return new Iterator<EObject>() {
+					private int next = reachableNodes.nextClearBit(0);
+
+					@Override
+					public boolean hasNext() {
+						return next < graph.resourceSize();
+					}
+
+					@Override
+					public EObject next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						EObject eObject = graph.getEObject(next);
+						next = reachableNodes.nextClearBit(next + 1);
+						return eObject;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+}
@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.InternalEObject;
+
+/**
+ * Selection of the {@link EReference}s that are followed when the edges of
+ * a {@link ModelGraph} are recorded: all the references except some of
+ * them, only some of them, or only the containment references. Container
+ * and derived references are never followed, as in
+ * {@link EObject#eContents()} and {@link EObject#eCrossReferences()}.
+ * <p>
+ * The selection is compiled, for every {@link EClass}, into arrays of
+ * feature ids, so that the values of the selected references are obtained
+ * with {@link InternalEObject#eGet(int, boolean, boolean)} without
+ * iterating over the other features. A filter may also be pruned with a
+ * {@link TypeReachability}, so that no reference is recorded for the
+ * instances of the {@link EClass}es that can not be reached
+ *
+ * @author agomez
+ *
+ */
+public class ReferenceFilter {
+
+	private static final Logger LOG = Logger.getLogger(ReferenceFilter.class.getName());
+
+	private static final int[] NO_FEATURES = new int[0];
+
+	private enum Mode {
+		INCLUDE, EXCLUDE, CONTAINMENT
+	}
+
+	private final Mode mode;
+	private final Set<EReference> eReferences;
+	private final TypeReachability typeReachability;
+	private final ConcurrentMap<EClass, int[][]> compiled = new ConcurrentHashMap<>();
+
+	private ReferenceFilter(Mode mode, Collection<EReference> eReferences) {
+		this(mode, eReferences, null);
+	}
+
+	private ReferenceFilter(Mode mode, Collection<EReference> eReferences, TypeReachability typeReachability) {
+		this.mode = mode;
+		this.eReferences = new HashSet<>(eReferences);
+		this.typeReachability = typeReachability;
+	}
+
+	/**
+	 * Returns a filter that only follows <code>eReferences</code>
+	 */
+	public static ReferenceFilter include(Collection<EReference> eReferences) {
+		return new ReferenceFilter(Mode.INCLUDE, eReferences);
+	}
+
+	/**
+	 * Returns a filter that follows all the references but
+	 * <code>eReferences</code>
+	 */
+	public static ReferenceFilter exclude(Collection<EReference> eReferences) {
+		return new ReferenceFilter(Mode.EXCLUDE, eReferences);
+	}
+
+	/**
+	 * Returns a filter that only follows containment references
+	 */
+	public static ReferenceFilter containmentOnly() {
+		return new ReferenceFilter(Mode.CONTAINMENT, Collections.<EReference> emptySet());
+	}
+
+	/**
+	 * Returns a filter that follows the same references as this one, except
+	 * those of the {@link EClass}es that are not reachable according to
+	 * <code>typeReachability</code>, whose instances are never visited
+	 */
+	public ReferenceFilter prune(TypeReachability typeReachability) {
+		return new ReferenceFilter(mode, eReferences, typeReachability);
+	}
+
+	/**
+	 * @return The {@link TypeReachability} used to prune {@link EClass}es,
+	 *         or <code>null</code>
+	 */
+	public TypeReachability getTypeReachability() {
+		return typeReachability;
+	}
+
+	/**
+	 * Finds the {@link EReference}s denoted by <code>names</code> in the
+	 * {@link EPackage}s of the global {@link EPackage.Registry}. A name is
+	 * either the name of a reference (matching the references with that name
+	 * in any {@link EClass}), or the name of the {@link EClass} declaring
+	 * it, a dot, and the name of the reference (e.g.
+	 * <code>IfcRelAggregates.RelatedObjects</code>)
+	 *
+	 * @param names
+	 *            The names of the {@link EReference}s
+	 * @return The matching {@link EReference}s
+	 */
+	public static List<EReference> findEReferences(String[] names) {
+		List<EReference> result = new ArrayList<>();
+		for (String name : names) {
+			int dot = name.lastIndexOf('.');
+			String eClassName = dot < 0 ? null : name.substring(0, dot);
+			String eReferenceName = name.substring(dot + 1);
+			boolean found = false;
+			for (Object obj : new ArrayList<>(EPackage.Registry.INSTANCE.values())) {
+				if (obj instanceof EPackage) {
+					for (EClassifier eClassifier : ((EPackage) obj).getEClassifiers()) {
+						if (eClassifier instanceof EClass && (eClassName == null || eClassName.equals(eClassifier.getName()))) {
+							for (EReference eReference : ((EClass) eClassifier).getEReferences()) {
+								if (eReferenceName.equals(eReference.getName())) {
+									result.add(eReference);
+									found = true;
+								}
+							}
+						}
+					}
+				}
+			}
+			if (!found) {
+				LOG.log(Level.WARNING, MessageFormat.format("EReference {0} not found in the registered metamodels", name));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns whether the values of <code>eReference</code> are followed
+	 */
+	public boolean accepts(EReference eReference) {
+		if (eReference.isContainer() || eReference.isDerived()) {
+			return false;
+		}
+		switch (mode) {
+		case INCLUDE:
+			return eReferences.contains(eReference);
+		case EXCLUDE:
+			return !eReferences.contains(eReference);
+		default:
+			return eReference.isContainment();
+		}
+	}
+
+	/**
+	 * Returns whether the values of <code>eReference</code> are followed in
+	 * instances of <code>eClass</code>
+	 */
+	public boolean accepts(EClass eClass, EReference eReference) {
+		return accepts(eReference) && (typeReachability == null || typeReachability.isReachable(eClass));
+	}
+
+	/**
+	 * Returns the feature ids of the accepted containment references of
+	 * <code>eClass</code>, in {@link EClass#getEAllReferences()} order
+	 */
+	public int[] getContainmentFeatureIds(EClass eClass) {
+		return compile(eClass)[0];
+	}
+
+	/**
+	 * Returns the feature ids of the accepted non-containment references of
+	 * <code>eClass</code>, in {@link EClass#getEAllReferences()} order
+	 */
+	public int[] getCrossReferenceFeatureIds(EClass eClass) {
+		return compile(eClass)[1];
+	}
+
+	private int[][] compile(EClass eClass) {
+		int[][] featureIds = compiled.get(eClass);
+		if (featureIds == null) {
+			IntList containments = new IntList();
+			IntList crossReferences = new IntList();
+			for (EReference eReference : eClass.getEAllReferences()) {
+				if (accepts(eClass, eReference)) {
+					if (eReference.isContainment()) {
+						containments.add(eClass.getFeatureID(eReference));
+					} else {
+						crossReferences.add(eClass.getFeatureID(eReference));
+					}
+				}
+			}
+			featureIds = new int[][] {
+					containments.isEmpty() ? NO_FEATURES : containments.toArray(),
+					crossReferences.isEmpty() ? NO_FEATURES : crossReferences.toArray() };
+			compiled.putIfAbsent(eClass, featureIds);
+		}
+		return featureIds;
+	}
+
+	/**
+	 * Returns a canonical description of this filter, used to tell apart
+	 * graphs extracted with different filters
+	 */
+	@Override
+	public String toString() {
+		String pruned = typeReachability != null ? " pruned " + typeReachability : "";
+		if (mode == Mode.CONTAINMENT) {
+			return "containment" + pruned;
+		}
+		Set<String> names = new TreeSet<>();
+		for (EReference eReference : eReferences) {
+			EClass eClass = eReference.getEContainingClass();
+			names.add(eClass.getEPackage().getNsURI() + "#" + eClass.getName() + "." + eReference.getName());
+		}
+		return (mode == Mode.INCLUDE ? "include" : "exclude") + names + pruned;
+	}
+}
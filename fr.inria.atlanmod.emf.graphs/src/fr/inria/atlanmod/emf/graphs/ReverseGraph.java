@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import org.eclipse.emf.ecore.util.ECrossReferenceAdapter;
+
+/**
+ * Reverse adjacency of a {@link ModelGraph}, i.e., the predecessors of
+ * every node, in the same compressed-sparse-row form as the forward edges:
+ * the predecessors of node <code>n</code> are the sources in
+ * <code>[edgeStart(n), edgeEnd(n))</code>, the container first (if any) and
+ * the sources of cross-reference edges from <code>crossStart(n)</code> on.
+ * <p>
+ * The index is obtained by transposing the forward edges with a counting
+ * sort, and takes two <code>int</code>s per node plus one per edge, instead
+ * of the per-object collections of settings kept by an
+ * {@link ECrossReferenceAdapter}. The index is stored outside of the Java
+ * heap if the graph is
+ *
+ * @author agomez
+ *
+ */
+public class ReverseGraph {
+
+	private final IntArray edgeOffsets;
+	private final IntArray crossOffsets;
+	private final IntArray sources;
+
+	/**
+	 * Transposes the edges of <code>graph</code>
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 */
+	ReverseGraph(ModelGraph graph) {
+		int size = graph.size();
+		int[] containmentCounts = new int[size];
+		int[] crossCounts = new int[size];
+		for (int node = 0; node < size; node++) {
+			for (int edge = graph.edgeStart(node), cross = graph.crossStart(node); edge < cross; edge++) {
+				containmentCounts[graph.target(edge)]++;
+			}
+			for (int edge = graph.crossStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+				crossCounts[graph.target(edge)]++;
+			}
+		}
+		boolean offHeap = graph.isOffHeap();
+		edgeOffsets = IntArray.allocate(size + 1, offHeap);
+		crossOffsets = IntArray.allocate(size, offHeap);
+		// Reuse the count arrays as the next free position of every node
+		int[] nextContainment = containmentCounts;
+		int[] nextCross = crossCounts;
+		for (int node = 0, offset = 0; node < size; node++) {
+			int containmentCount = containmentCounts[node];
+			int crossCount = crossCounts[node];
+			nextContainment[node] = offset;
+			offset += containmentCount;
+			crossOffsets.set(node, offset);
+			nextCross[node] = offset;
+			offset += crossCount;
+			edgeOffsets.set(node + 1, offset);
+		}
+		sources = IntArray.allocate(graph.edgeCount(), offHeap);
+		for (int node = 0; node < size; node++) {
+			for (int edge = graph.edgeStart(node), cross = graph.crossStart(node); edge < cross; edge++) {
+				sources.set(nextContainment[graph.target(edge)]++, node);
+			}
+			for (int edge = graph.crossStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+				sources.set(nextCross[graph.target(edge)]++, node);
+			}
+		}
+	}
+
+	public int edgeStart(int node) {
+		return edgeOffsets.get(node);
+	}
+
+	public int crossStart(int node) {
+		return crossOffsets.get(node);
+	}
+
+	public int edgeEnd(int node) {
+		return edgeOffsets.get(node + 1);
+	}
+
+	public int source(int edge) {
+		return sources.get(edge);
+	}
+
+	/**
+	 * Returns the container of <code>node</code>, or <code>-1</code> if it
+	 * is not contained by any node of the graph
+	 */
+	public int getContainer(int node) {
+		int start = edgeOffsets.get(node);
+		return start < crossOffsets.get(node) ? sources.get(start) : -1;
+	}
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.util.Arrays;
+
+import org.eclipse.emf.ecore.EReference;
+
+/**
+ * Breadth-first search tree of a {@link ModelGraph}, rooted at one or more
+ * nodes, which explains why a node is reachable: the path of edges from
+ * the closest root to every reachable node is as short as possible.
+ * <p>
+ * The search only allocates two <code>int</code> arrays, with an entry per
+ * node: the edge through which every node is first reached, and the queue
+ * of the search. The parent of a node is the source of its incoming edge
+ * (see {@link ModelGraph#edgeSource(int)}), and its {@link EReference} is
+ * the one recorded for the edge when the graph was extracted (see
+ * {@link ModelGraph#getEReference(int)})
+ *
+ * @author agomez
+ *
+ */
+public class ShortestPaths {
+
+	/**
+	 * Incoming edge of the nodes that are not reachable
+	 */
+	public static final int UNREACHABLE = -1;
+
+	/**
+	 * Incoming edge of the roots
+	 */
+	public static final int ROOT = -2;
+
+	private final ModelGraph graph;
+	private final int[] incomingEdges;
+	private final int[] queue;
+	private final int reachableCount;
+
+	private ShortestPaths(ModelGraph graph, int[] incomingEdges, int[] queue, int reachableCount) {
+		this.graph = graph;
+		this.incomingEdges = incomingEdges;
+		this.queue = queue;
+		this.reachableCount = reachableCount;
+	}
+
+	/**
+	 * Computes the breadth-first search tree of <code>graph</code> rooted at
+	 * <code>roots</code>
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param roots
+	 *            The initial nodes
+	 * @return The {@link ShortestPaths}
+	 */
+	public static ShortestPaths compute(ModelGraph graph, int... roots) {
+		int[] incomingEdges = new int[graph.size()];
+		int[] queue = new int[graph.size()];
+		Arrays.fill(incomingEdges, UNREACHABLE);
+		int tail = 0;
+		for (int root : roots) {
+			if (incomingEdges[root] == UNREACHABLE) {
+				incomingEdges[root] = ROOT;
+				queue[tail++] = root;
+			}
+		}
+		for (int head = 0; head < tail; head++) {
+			int node = queue[head];
+			for (int edge = graph.edgeStart(node), end = graph.edgeEnd(node); edge < end; edge++) {
+				int target = graph.target(edge);
+				if (incomingEdges[target] == UNREACHABLE) {
+					incomingEdges[target] = edge;
+					queue[tail++] = target;
+				}
+			}
+		}
+		return new ShortestPaths(graph, incomingEdges, queue, tail);
+	}
+
+	/**
+	 * @return The number of reachable nodes (including the roots)
+	 */
+	public int getReachableCount() {
+		return reachableCount;
+	}
+
+	/**
+	 * Returns the <code>i</code>-th reachable node, in breadth-first order
+	 */
+	public int getReachableNode(int i) {
+		return queue[i];
+	}
+
+	/**
+	 * Returns whether <code>node</code> is reachable from the roots
+	 */
+	public boolean isReachable(int node) {
+		return incomingEdges[node] != UNREACHABLE;
+	}
+
+	/**
+	 * Returns the edge through which <code>node</code> is reached, or
+	 * {@link #ROOT} or {@link #UNREACHABLE}
+	 */
+	public int getIncomingEdge(int node) {
+		return incomingEdges[node];
+	}
+
+	/**
+	 * Returns the node from which <code>node</code> is reached, or
+	 * <code>-1</code> if <code>node</code> is a root or is not reachable
+	 */
+	public int getParent(int node) {
+		int edge = incomingEdges[node];
+		return edge >= 0 ? graph.edgeSource(edge) : -1;
+	}
+
+	/**
+	 * Returns the edges of the shortest path from the roots to
+	 * <code>node</code>, in order, or <code>null</code> if <code>node</code>
+	 * is not reachable. The path of a root is empty
+	 */
+	public int[] getPath(int node) {
+		if (!isReachable(node)) {
+			return null;
+		}
+		IntList path = new IntList();
+		for (int current = node; incomingEdges[current] != ROOT; current = graph.edgeSource(incomingEdges[current])) {
+			path.add(incomingEdges[current]);
+		}
+		int[] edges = path.toArray();
+		for (int i = 0, j = edges.length - 1; i < j; i++, j--) {
+			int edge = edges[i];
+			edges[i] = edges[j];
+			edges[j] = edge;
+		}
+		return edges;
+	}
+
+	/**
+	 * Returns the root from which the shortest path to <code>node</code>
+	 * starts, or <code>-1</code> if <code>node</code> is not reachable
+	 */
+	public int getRoot(int node) {
+		if (!isReachable(node)) {
+			return -1;
+		}
+		int current = node;
+		while (incomingEdges[current] != ROOT) {
+			current = graph.edgeSource(incomingEdges[current]);
+		}
+		return current;
+	}
+}
@@ -0,0 +1,559 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Extracts the {@link ModelGraph} of an XMI file by parsing it with SAX,
+ * without creating any {@link EObject}. Elements are numbered in document
+ * order, which is the {@link Resource#getAllContents()} order, and
+ * references (either position-based fragments or <code>xmi:id</code>s) are
+ * recorded in compact arrays and resolved in a second pass once the whole
+ * containment tree is known.
+ * <p>
+ * Objects of other {@link Resource}s are added to the graph as nodes
+ * without edges, since their files are not parsed.
+ *
+ * @author agomez
+ *
+ */
+public class StreamingGraphLoader {
+
+	private static final Logger LOG = Logger.getLogger(StreamingGraphLoader.class.getName());
+
+	private static final String XMI_NS = "http://www.omg.org/XMI";
+	private static final String XSI_NS = "http://www.w3.org/2001/XMLSchema-instance";
+
+	private static final int PATH_REFERENCE = 0;
+	private static final int ID_REFERENCE = 1;
+	private static final int EXTERNAL_REFERENCE = 2;
+
+	private final EPackage.Registry registry;
+	private final ReferenceFilter filter;
+
+	/**
+	 * Creates a new loader
+	 *
+	 * @param registry
+	 *            The {@link EPackage.Registry} used to look up the
+	 *            {@link EPackage}s of the namespaces of the XMI files
+	 */
+	public StreamingGraphLoader(EPackage.Registry registry) {
+		this(registry, null);
+	}
+
+	/**
+	 * Creates a new loader that only records the edges of the
+	 * {@link EReference}s accepted by <code>filter</code>
+	 *
+	 * @param registry
+	 *            The {@link EPackage.Registry} used to look up the
+	 *            {@link EPackage}s of the namespaces of the XMI files
+	 * @param filter
+	 *            The {@link ReferenceFilter}, or <code>null</code> to record
+	 *            all the references
+	 */
+	public StreamingGraphLoader(EPackage.Registry registry, ReferenceFilter filter) {
+		this.registry = registry;
+		this.filter = filter;
+	}
+
+	/**
+	 * Extracts the {@link ModelGraph} of the XMI file at <code>uri</code>
+	 *
+	 * @param uri
+	 *            The {@link URI} of the XMI file
+	 * @return The {@link ModelGraph}
+	 * @throws IOException
+	 *             If the file can not be read or parsed
+	 */
+	public ModelGraph load(URI uri) throws IOException {
+		if (uri.isRelative() && uri.isFile()) {
+			uri = URI.createFileURI(new File(uri.toFileString()).getAbsolutePath());
+		}
+		Handler handler = new Handler(uri);
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		try (InputStream inputStream = new BufferedInputStream(URIConverter.INSTANCE.createInputStream(uri))) {
+			factory.newSAXParser().parse(inputStream, handler);
+		} catch (ParserConfigurationException | SAXException e) {
+			throw new IOException(e);
+		}
+		return handler.toGraph();
+	}
+
+	/**
+	 * SAX handler recording the nodes and the (unresolved) edges of the
+	 * graph
+	 */
+	private class Handler extends DefaultHandler {
+
+		private final URI uri;
+		private final Map<String, String> prefixes = new HashMap<>();
+
+		// Nodes of the resource
+		private final IntList classIds = new IntList(1024);
+		private final IntList containers = new IntList(1024);
+		private final IntList features = new IntList(1024);
+		private final IntList positions = new IntList(1024);
+		private final List<String> ids = new ArrayList<>(1024);
+		private final IntList roots = new IntList();
+		private boolean hasIds;
+
+		private final IdentityIntMap<EClass> eClassIds = new IdentityIntMap<>(256);
+		private final List<EClass> eClasses = new ArrayList<>();
+		private final Map<String, Integer> featureNameIds = new HashMap<>();
+		private final List<String> featureNames = new ArrayList<>();
+
+		// Containment edges accepted by the filter, in document order, and
+		// the feature id of their reference in the EClass of the source
+		private final IntList containmentSources = new IntList(1024);
+		private final IntList containmentTargets = new IntList(1024);
+		private final IntList containmentFeatureIds = new IntList(1024);
+
+		// Unresolved cross-references: feature id, kind and value of every
+		// reference
+		private final IntList referenceSources = new IntList(1024);
+		private final IntList referenceFeatureIds = new IntList(1024);
+		private final IntList referenceKinds = new IntList(1024);
+		private final IntList referenceValues = new IntList(1024);
+		// Position-based fragments: root index, number of segments, and
+		// (feature name id, position) per segment
+		private final IntList paths = new IntList(1024);
+		private final Map<String, Integer> idSymbols = new HashMap<>();
+		private final IntList idNodes = new IntList();
+		private final Map<String, Integer> externalIds = new HashMap<>();
+		private final List<String> externalURIs = new ArrayList<>();
+
+		// Open object elements: node, and last containing feature and
+		// position of its children
+		private final IntList frameNodes = new IntList();
+		private final IntList frameFeatures = new IntList();
+		private final IntList framePositions = new IntList();
+		private int skipDepth;
+
+		private Handler(URI uri) {
+			this.uri = uri;
+		}
+
+		@Override
+		public void startPrefixMapping(String prefix, String uri) {
+			prefixes.put(prefix, uri);
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+			if (skipDepth > 0) {
+				skipDepth++;
+				return;
+			}
+			if (frameNodes.isEmpty()) {
+				if (XMI_NS.equals(uri) && "XMI".equals(localName)) {
+					// Wrapper of a multi-root resource
+					return;
+				}
+				EClass eClass = resolveType(attributes.getValue(XSI_NS, "type"), getEClass(uri, localName));
+				if (eClass == null) {
+					LOG.log(Level.WARNING, MessageFormat.format("Unknown root element {0}, skipping it", qName));
+					skipDepth = 1;
+					return;
+				}
+				int node = addNode(eClass, PositionalIndex.NO_CONTAINER, -1, roots.size());
+				roots.add(node);
+				startObject(node, eClass, attributes);
+				return;
+			}
+			int parent = frameNodes.get(frameNodes.size() - 1);
+			EClass parentEClass = eClasses.get(classIds.get(parent));
+			EStructuralFeature feature = parentEClass.getEStructuralFeature(localName);
+			if (!(feature instanceof EReference) || ((EReference) feature).isContainer()) {
+				// Attribute values, extensions and unknown features
+				skipDepth = 1;
+				return;
+			}
+			EReference eReference = (EReference) feature;
+			String href = attributes.getValue("href");
+			if (eReference.isContainment()) {
+				int featureNameId = getFeatureNameId(eReference.getName());
+				int position = nextPosition(eReference, featureNameId);
+				if (href != null) {
+					// Cross-resource containment proxy
+					if (isAccepted(parentEClass, eReference)) {
+						addReference(parent, parentEClass.getFeatureID(eReference), href, containmentSources, containmentFeatureIds, containmentTargets);
+					}
+					skipDepth = 1;
+					return;
+				}
+				EClass eClass = resolveType(attributes.getValue(XSI_NS, "type"), eReference.getEReferenceType());
+				int node = addNode(eClass, parent, featureNameId, position);
+				if (isAccepted(parentEClass, eReference)) {
+					containmentSources.add(parent);
+					containmentTargets.add(node);
+					containmentFeatureIds.add(parentEClass.getFeatureID(eReference));
+				}
+				startObject(node, eClass, attributes);
+			} else {
+				if (href != null && isAccepted(parentEClass, eReference)) {
+					addReference(parent, parentEClass.getFeatureID(eReference), href, referenceSources, referenceFeatureIds, null);
+				}
+				skipDepth = 1;
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+			if (skipDepth > 0) {
+				skipDepth--;
+			} else if (!frameNodes.isEmpty()) {
+				int last = frameNodes.size() - 1;
+				frameNodes.truncate(last);
+				frameFeatures.truncate(last);
+				framePositions.truncate(last);
+			}
+		}
+
+		private void startObject(int node, EClass eClass, Attributes attributes) {
+			for (int i = 0; i < attributes.getLength(); i++) {
+				String attributeURI = attributes.getURI(i);
+				String attributeName = attributes.getLocalName(i);
+				if (XMI_NS.equals(attributeURI)) {
+					if ("id".equals(attributeName)) {
+						setId(node, attributes.getValue(i));
+					}
+				} else if (attributeURI.isEmpty()) {
+					EStructuralFeature feature = eClass.getEStructuralFeature(attributeName);
+					if (feature instanceof EReference && !((EReference) feature).isContainment() && !((EReference) feature).isContainer()
+							&& isAccepted(eClass, (EReference) feature)) {
+						int featureId = eClass.getFeatureID(feature);
+						for (String token : attributes.getValue(i).trim().split("\\s+")) {
+							if (!token.isEmpty() && !isTypeName(token)) {
+								addReference(node, featureId, token, referenceSources, referenceFeatureIds, null);
+							}
+						}
+					}
+				}
+			}
+			frameNodes.add(node);
+			frameFeatures.add(-1);
+			framePositions.add(-1);
+		}
+
+		private boolean isAccepted(EClass eClass, EReference eReference) {
+			return filter == null || filter.accepts(eClass, eReference);
+		}
+
+		/**
+		 * Returns the position of the next child of the current object
+		 * contained by the given feature. Values of a feature are serialized
+		 * contiguously, so only the last feature has to be tracked
+		 */
+		private int nextPosition(EReference eReference, int featureId) {
+			if (!eReference.isMany()) {
+				return PositionalIndex.SINGLE_VALUED;
+			}
+			int frame = frameNodes.size() - 1;
+			int position = frameFeatures.get(frame) == featureId ? framePositions.get(frame) + 1 : 0;
+			frameFeatures.set(frame, featureId);
+			framePositions.set(frame, position);
+			return position;
+		}
+
+		private int addNode(EClass eClass, int container, int feature, int position) {
+			int classId = eClassIds.get(eClass);
+			if (classId == IdentityIntMap.NO_VALUE) {
+				classId = eClasses.size();
+				eClassIds.put(eClass, classId);
+				eClasses.add(eClass);
+			}
+			int node = classIds.size();
+			classIds.add(classId);
+			containers.add(container);
+			features.add(feature);
+			positions.add(position);
+			ids.add(null);
+			return node;
+		}
+
+		private void setId(int node, String id) {
+			ids.set(node, id);
+			hasIds = true;
+			int symbol = getIdSymbol(id);
+			idNodes.set(symbol, node);
+		}
+
+		/**
+		 * Records a reference (of the feature <code>featureId</code>) from
+		 * <code>source</code> to the object denoted by <code>token</code>,
+		 * which may be an identifier, a fragment, or a (relative) URI with a
+		 * fragment. If <code>targets</code> is not <code>null</code>, the
+		 * reference must point to another resource and it is recorded
+		 * immediately in <code>sources</code> and <code>targets</code> using
+		 * a temporary negative id
+		 *
+		 * @return Whether the reference has been recorded
+		 */
+		private boolean addReference(int source, int featureId, String token, IntList sources, IntList featureIds, IntList targets) {
+			int hash = token.indexOf('#');
+			String fragment = token;
+			if (hash >= 0) {
+				String location = token.substring(0, hash);
+				fragment = token.substring(hash + 1);
+				if (!location.isEmpty()) {
+					URI target = URI.createURI(token);
+					if (!uri.isRelative()) {
+						target = target.resolve(uri);
+					}
+					if (!target.trimFragment().equals(uri)) {
+						int external = getExternalId(target.toString());
+						sources.add(source);
+						featureIds.add(featureId);
+						if (targets != null) {
+							targets.add(-external - 1);
+						} else {
+							referenceKinds.add(EXTERNAL_REFERENCE);
+							referenceValues.add(external);
+						}
+						return true;
+					}
+				}
+			}
+			if (targets != null) {
+				// Containment proxies to the same resource are not expected
+				return false;
+			}
+			if (fragment.startsWith("/")) {
+				int path = parsePath(fragment);
+				if (path == -1) {
+					return false;
+				}
+				sources.add(source);
+				featureIds.add(featureId);
+				referenceKinds.add(PATH_REFERENCE);
+				referenceValues.add(path);
+			} else {
+				sources.add(source);
+				featureIds.add(featureId);
+				referenceKinds.add(ID_REFERENCE);
+				referenceValues.add(getIdSymbol(fragment));
+			}
+			return true;
+		}
+
+		/**
+		 * Parses a position-based fragment into the paths pool
+		 *
+		 * @return The offset of the parsed path, or <code>-1</code> if the
+		 *         fragment is not supported (e.g. key-based segments)
+		 */
+		private int parsePath(String fragment) {
+			int offset = paths.size();
+			try {
+				int slash = fragment.indexOf('/', 1);
+				String rootSegment = slash < 0 ? fragment.substring(1) : fragment.substring(1, slash);
+				paths.add(rootSegment.isEmpty() ? 0 : Integer.parseInt(rootSegment));
+				paths.add(0);
+				int segments = 0;
+				while (slash >= 0) {
+					int next = fragment.indexOf('/', slash + 1);
+					String segment = next < 0 ? fragment.substring(slash + 1) : fragment.substring(slash + 1, next);
+					if (!segment.startsWith("@") || segment.indexOf('[') >= 0) {
+						throw new NumberFormatException(segment);
+					}
+					int dot = segment.lastIndexOf('.');
+					if (dot < 0) {
+						paths.add(getFeatureNameId(segment.substring(1)));
+						paths.add(PositionalIndex.SINGLE_VALUED);
+					} else {
+						paths.add(getFeatureNameId(segment.substring(1, dot)));
+						paths.add(Integer.parseInt(segment.substring(dot + 1)));
+					}
+					segments++;
+					slash = next;
+				}
+				paths.set(offset + 1, segments);
+				return offset;
+			} catch (NumberFormatException e) {
+				paths.truncate(offset);
+				LOG.log(Level.WARNING, MessageFormat.format("Unsupported fragment {0}", fragment));
+				return -1;
+			}
+		}
+
+		private boolean isTypeName(String token) {
+			int colon = token.indexOf(':');
+			return colon > 0 && token.indexOf('/') < 0 && token.indexOf('#') < 0 && prefixes.containsKey(token.substring(0, colon));
+		}
+
+		private EClass resolveType(String xsiType, EClass defaultType) {
+			if (xsiType != null) {
+				int colon = xsiType.indexOf(':');
+				String prefix = colon < 0 ? "" : xsiType.substring(0, colon);
+				EClass eClass = getEClass(prefixes.get(prefix), xsiType.substring(colon + 1));
+				if (eClass != null) {
+					return eClass;
+				}
+			}
+			return defaultType;
+		}
+
+		private EClass getEClass(String nsURI, String name) {
+			EPackage ePackage = nsURI != null ? registry.getEPackage(nsURI) : null;
+			EClassifier eClassifier = ePackage != null ? ePackage.getEClassifier(name) : null;
+			return eClassifier instanceof EClass ? (EClass) eClassifier : null;
+		}
+
+		private int getFeatureNameId(String name) {
+			Integer id = featureNameIds.get(name);
+			if (id == null) {
+				id = featureNames.size();
+				featureNameIds.put(name, id);
+				featureNames.add(name);
+			}
+			return id;
+		}
+
+		private int getIdSymbol(String id) {
+			Integer symbol = idSymbols.get(id);
+			if (symbol == null) {
+				symbol = idNodes.size();
+				idSymbols.put(id, symbol);
+				idNodes.add(-1);
+			}
+			return symbol;
+		}
+
+		private int getExternalId(String uri) {
+			Integer id = externalIds.get(uri);
+			if (id == null) {
+				id = externalURIs.size();
+				externalIds.put(uri, id);
+				externalURIs.add(uri);
+			}
+			return id;
+		}
+
+		/**
+		 * Resolves the recorded references and builds the {@link ModelGraph}
+		 */
+		private ModelGraph toGraph() {
+			int resourceSize = classIds.size();
+			int size = resourceSize + externalURIs.size();
+
+			PositionalIndex positionalIndex = new PositionalIndex(containers.toArray(), features.toArray(), positions.toArray(),
+					featureNames.toArray(new String[featureNames.size()]), roots.size(), hasIds ? ids.toArray(new String[ids.size()]) : null);
+
+			int[] containmentCounts = new int[size];
+			for (int i = 0; i < containmentSources.size(); i++) {
+				containmentCounts[containmentSources.get(i)]++;
+			}
+
+			// Resolve cross-references through the positional index
+			int[] referenceTargets = new int[referenceSources.size()];
+			int[] crossCounts = new int[size];
+			int unresolved = 0;
+			for (int i = 0; i < referenceSources.size(); i++) {
+				int value = referenceValues.get(i);
+				int target;
+				switch (referenceKinds.get(i)) {
+				case PATH_REFERENCE:
+					target = resolvePath(value, positionalIndex);
+					break;
+				case ID_REFERENCE:
+					target = idNodes.get(value);
+					break;
+				default:
+					target = resourceSize + value;
+				}
+				referenceTargets[i] = target;
+				if (target != -1) {
+					crossCounts[referenceSources.get(i)]++;
+				} else {
+					unresolved++;
+				}
+			}
+			if (unresolved > 0) {
+				LOG.log(Level.WARNING, MessageFormat.format("{0} references could not be resolved", unresolved));
+			}
+
+			// Final CSR: containment edges first, then cross-references
+			int[] edgeOffsets = new int[size + 1];
+			int[] crossOffsets = new int[size];
+			for (int node = 0; node < size; node++) {
+				crossOffsets[node] = edgeOffsets[node] + containmentCounts[node];
+				edgeOffsets[node + 1] = crossOffsets[node] + crossCounts[node];
+			}
+			int[] targets = new int[edgeOffsets[size]];
+			int[] edgeFeatureIds = new int[edgeOffsets[size]];
+			int[] fill = new int[size];
+			System.arraycopy(edgeOffsets, 0, fill, 0, size);
+			for (int i = 0; i < containmentSources.size(); i++) {
+				int target = containmentTargets.get(i);
+				int edge = fill[containmentSources.get(i)]++;
+				targets[edge] = target < 0 ? resourceSize - target - 1 : target;
+				edgeFeatureIds[edge] = containmentFeatureIds.get(i);
+			}
+			for (int i = 0; i < referenceTargets.length; i++) {
+				if (referenceTargets[i] != -1) {
+					int edge = fill[referenceSources.get(i)]++;
+					targets[edge] = referenceTargets[i];
+					edgeFeatureIds[edge] = referenceFeatureIds.get(i);
+				}
+			}
+
+			int[] nodeClassIds = new int[size];
+			System.arraycopy(classIds.toArray(), 0, nodeClassIds, 0, resourceSize);
+			for (int node = resourceSize; node < size; node++) {
+				nodeClassIds[node] = ModelGraph.NO_CLASS;
+			}
+			return new ModelGraph(uri, resourceSize, nodeClassIds, eClasses.toArray(new EClass[eClasses.size()]), edgeOffsets, crossOffsets,
+					targets, edgeFeatureIds, positionalIndex, externalURIs.toArray(new String[externalURIs.size()]));
+		}
+
+		/**
+		 * Returns the node denoted by the path at <code>offset</code>, or
+		 * <code>-1</code> if there is no such node
+		 */
+		private int resolvePath(int offset, PositionalIndex positionalIndex) {
+			int node = positionalIndex.getChild(PositionalIndex.NO_CONTAINER, -1, paths.get(offset));
+			for (int segment = 0, segments = paths.get(offset + 1); segment < segments && node != -1; segment++) {
+				node = positionalIndex.getChild(node, paths.get(offset + 2 + 2 * segment), paths.get(offset + 3 + 2 * segment));
+			}
+			return node;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.resource.Resource;
+
+/**
+ * Index of the nodes of the {@link Resource} of a {@link ModelGraph} by
+ * class id. Nodes are grouped with a counting sort over the class ids
+ * assigned while the graph is loaded, so the instances of a class are
+ * obtained without scanning the graph, and type checks are reduced to a
+ * lookup in a <code>boolean</code> array indexed by class id
+ *
+ * @author agomez
+ *
+ */
+public class TypeIndex {
+
+	private final EClass[] eClasses;
+	private final int[] offsets;
+	private final int[] nodes;
+
+	/**
+	 * Creates a new index
+	 *
+	 * @param eClasses
+	 *            The {@link EClass} of every class id
+	 * @param classIds
+	 *            The class id of every node
+	 * @param resourceSize
+	 *            The number of nodes of the {@link Resource}; only these
+	 *            nodes are indexed
+	 */
+	TypeIndex(EClass[] eClasses, IntArray classIds, int resourceSize) {
+		this.eClasses = eClasses;
+		this.offsets = new int[eClasses.length + 1];
+		this.nodes = new int[resourceSize];
+		for (int node = 0; node < resourceSize; node++) {
+			int classId = classIds.get(node);
+			if (classId != ModelGraph.NO_CLASS) {
+				offsets[classId + 1]++;
+			}
+		}
+		for (int classId = 0; classId < eClasses.length; classId++) {
+			offsets[classId + 1] += offsets[classId];
+		}
+		int[] next = offsets.clone();
+		for (int node = 0; node < resourceSize; node++) {
+			int classId = classIds.get(node);
+			if (classId != ModelGraph.NO_CLASS) {
+				nodes[next[classId]++] = node;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of nodes whose class id is <code>classId</code>
+	 */
+	public int getInstanceCount(int classId) {
+		return offsets[classId + 1] - offsets[classId];
+	}
+
+	/**
+	 * Returns the class ids that are instances of any of <code>types</code>,
+	 * i.e., whose {@link EClass} is one of <code>types</code> or one of their
+	 * subtypes
+	 *
+	 * @param types
+	 *            The {@link EClass}es
+	 * @return An array indexed by class id
+	 */
+	public boolean[] getMatchingClasses(Collection<EClass> types) {
+		boolean[] matching = new boolean[eClasses.length];
+		for (int classId = 0; classId < eClasses.length; classId++) {
+			for (EClass type : types) {
+				if (type.isSuperTypeOf(eClasses[classId])) {
+					matching[classId] = true;
+					break;
+				}
+			}
+		}
+		return matching;
+	}
+
+	/**
+	 * Returns the nodes that are instances of any of <code>types</code>
+	 * (including instances of their subtypes)
+	 *
+	 * @param types
+	 *            The {@link EClass}es
+	 * @return The nodes, in ascending order
+	 */
+	public int[] getInstances(Collection<EClass> types) {
+		boolean[] matching = getMatchingClasses(types);
+		IntList instances = new IntList();
+		for (int classId = 0; classId < matching.length; classId++) {
+			if (matching[classId]) {
+				for (int i = offsets[classId]; i < offsets[classId + 1]; i++) {
+					instances.add(nodes[i]);
+				}
+			}
+		}
+		// The range of every class is sorted, but ranges are interleaved
+		int[] result = instances.toArray();
+		Arrays.sort(result);
+		return result;
+	}
+}
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EcorePackage;
+
+/**
+ * Metamodel-level reachability: the {@link EClass}es whose instances may be
+ * reached from instances of a set of source {@link EClass}es, computed
+ * over the {@link EClass}es of a set of {@link EPackage}s without looking
+ * at any model. An {@link EClass} is reachable if it is a source, or the
+ * type of a (followed) {@link EReference} of a reachable {@link EClass},
+ * or a subtype of any of them; references typed as {@link EObject} reach
+ * every {@link EClass}.
+ * <p>
+ * Instances of unreachable {@link EClass}es can not be reached from the
+ * instances of the sources, so their references need not be recorded (see
+ * {@link ReferenceFilter#prune(TypeReachability)}), and they can be counted
+ * as unreachable without any traversal. {@link EClass}es that do not
+ * belong to the given {@link EPackage}s are considered reachable, since
+ * their supertypes and references were not taken into account
+ *
+ * @author agomez
+ *
+ */
+public class TypeReachability {
+
+	private final Set<EClass> eClasses;
+	private final Set<EClass> reachable;
+
+	private TypeReachability(Set<EClass> eClasses, Set<EClass> reachable) {
+		this.eClasses = eClasses;
+		this.reachable = reachable;
+	}
+
+	/**
+	 * Computes the {@link EClass}es of <code>ePackages</code> that are
+	 * reachable from <code>sources</code>
+	 *
+	 * @param ePackages
+	 *            The {@link EPackage}s (their subpackages are included)
+	 * @param sources
+	 *            The source {@link EClass}es
+	 * @param filter
+	 *            The {@link ReferenceFilter} of the followed references, or
+	 *            <code>null</code> to follow all of them
+	 * @return The {@link TypeReachability}
+	 */
+	public static TypeReachability compute(Collection<EPackage> ePackages, Collection<EClass> sources, ReferenceFilter filter) {
+		Set<EClass> eClasses = new LinkedHashSet<>();
+		for (EPackage ePackage : ePackages) {
+			collectEClasses(ePackage, eClasses);
+		}
+		Map<EClass, List<EClass>> subtypes = new HashMap<>();
+		for (EClass eClass : eClasses) {
+			for (EClass superType : eClass.getEAllSuperTypes()) {
+				List<EClass> list = subtypes.get(superType);
+				if (list == null) {
+					list = new ArrayList<>();
+					subtypes.put(superType, list);
+				}
+				list.add(eClass);
+			}
+		}
+
+		Set<EClass> reachable = new HashSet<>();
+		Queue<EClass> queue = new LinkedList<>();
+		for (EClass source : sources) {
+			mark(source, subtypes, reachable, queue);
+		}
+		while (!queue.isEmpty()) {
+			EClass eClass = queue.poll();
+			for (EReference eReference : eClass.getEAllReferences()) {
+				if (filter != null ? !filter.accepts(eReference) : eReference.isContainer() || eReference.isDerived()) {
+					continue;
+				}
+				EClass type = eReference.getEReferenceType();
+				if (type == EcorePackage.Literals.EOBJECT) {
+					for (EClass other : eClasses) {
+						mark(other, subtypes, reachable, queue);
+					}
+				} else if (type != null) {
+					mark(type, subtypes, reachable, queue);
+				}
+			}
+		}
+		return new TypeReachability(eClasses, reachable);
+	}
+
+	private static void collectEClasses(EPackage ePackage, Set<EClass> eClasses) {
+		for (EClassifier eClassifier : ePackage.getEClassifiers()) {
+			if (eClassifier instanceof EClass) {
+				eClasses.add((EClass) eClassifier);
+			}
+		}
+		for (EPackage eSubpackage : ePackage.getESubpackages()) {
+			collectEClasses(eSubpackage, eClasses);
+		}
+	}
+
+	/**
+	 * Marks <code>eClass</code> and its subtypes as reachable
+	 */
+	private static void mark(EClass eClass, Map<EClass, List<EClass>> subtypes, Set<EClass> reachable, Queue<EClass> queue) {
+		if (reachable.add(eClass)) {
+			queue.add(eClass);
+		}
+		List<EClass> list = subtypes.get(eClass);
+		if (list != null) {
+			for (EClass subtype : list) {
+				if (reachable.add(subtype)) {
+					queue.add(subtype);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns whether instances of <code>eClass</code> may be reached from
+	 * instances of the sources
+	 */
+	public boolean isReachable(EClass eClass) {
+		return reachable.contains(eClass) || !eClasses.contains(eClass);
+	}
+
+	/**
+	 * @return The number of {@link EClass}es of the {@link EPackage}s
+	 */
+	public int getEClassCount() {
+		return eClasses.size();
+	}
+
+	/**
+	 * @return The {@link EClass}es of the {@link EPackage}s that can not be
+	 *         reached from the sources
+	 */
+	public Set<EClass> getUnreachableEClasses() {
+		Set<EClass> unreachable = new LinkedHashSet<>();
+		for (EClass eClass : eClasses) {
+			if (!reachable.contains(eClass)) {
+				unreachable.add(eClass);
+			}
+		}
+		return unreachable;
+	}
+
+	/**
+	 * Returns a canonical description of the unreachable {@link EClass}es
+	 */
+	@Override
+	public String toString() {
+		Set<String> names = new TreeSet<>();
+		for (EClass eClass : getUnreachableEClasses()) {
+			names.add(eClass.getEPackage().getNsURI() + "#" + eClass.getName());
+		}
+		return "unreachable" + names;
+	}
+}
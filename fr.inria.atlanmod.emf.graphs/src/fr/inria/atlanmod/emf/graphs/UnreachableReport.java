@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Abel Gómez.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Abel Gómez - initial API and implementation
+ ******************************************************************************/
+package fr.inria.atlanmod.emf.graphs;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.ecore.EClass;
+
+/**
+ * Report of the objects that are unreachable from every analyzed root,
+ * written to a CSV or JSON Lines file with one record per unreachable
+ * object. The analysis thread only hands over the set of reachable nodes
+ * of every root: records are formatted and written in batches by a
+ * background thread, through a large write buffer. At most
+ * {@link #MAX_PENDING} sets of nodes wait to be written, so that a slow
+ * disk blocks the analysis instead of filling the heap
+ *
+ * @author agomez
+ *
+ */
+public class UnreachableReport implements Closeable {
+
+	/**
+	 * Output format of the records
+	 */
+	public enum Format {
+		/**
+		 * Comma-separated values, with a header line
+		 */
+		CSV,
+		/**
+		 * One JSON object per line
+		 */
+		JSONL;
+
+		/**
+		 * Returns the format matching the extension of <code>file</code>:
+		 * {@link #JSONL} for <code>.jsonl</code> and <code>.json</code>
+		 * files, {@link #CSV} otherwise
+		 */
+		public static Format forFile(File file) {
+			String name = file.getName().toLowerCase();
+			return name.endsWith(".jsonl") || name.endsWith(".json") ? JSONL : CSV;
+		}
+	}
+
+	/**
+	 * Maximum number of sets of reachable nodes waiting to be written
+	 */
+	public static final int MAX_PENDING = 4;
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private final Format format;
+	private final Writer writer;
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private final Semaphore pending = new Semaphore(MAX_PENDING);
+	private volatile IOException error;
+	private volatile long recordCount;
+
+	/**
+	 * Creates the report file and starts the writer thread
+	 *
+	 * @param file
+	 *            The output file
+	 * @param format
+	 *            The {@link Format} of the records
+	 * @throws IOException
+	 *             If the file can not be created
+	 */
+	public UnreachableReport(File file, Format format) throws IOException {
+		this.format = format;
+		this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), BUFFER_SIZE);
+		if (format == Format.CSV) {
+			writer.write("root,rootEClass,object,eClass\n");
+		}
+	}
+
+	/**
+	 * Queues the records of the nodes of the model of <code>graph</code>
+	 * that are not in <code>reachableNodes</code>. The
+	 * {@link BitSet} is owned by the report from now on, and must not be
+	 * modified by the caller
+	 *
+	 * @param graph
+	 *            The {@link ModelGraph}
+	 * @param root
+	 *            The root of the traversal
+	 * @param reachableNodes
+	 *            The nodes reachable from <code>root</code>
+	 * @throws IOException
+	 *             If a previous batch could not be written
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting for pending
+	 *             batches to be written
+	 */
+	public void add(final ModelGraph graph, final int root, final BitSet reachableNodes) throws IOException, InterruptedException {
+		checkError();
+		pending.acquire();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (error == null) {
+						write(graph, root, reachableNodes);
+					}
+				} catch (IOException e) {
+					error = e;
+				} finally {
+					pending.release();
+				}
+			}
+		});
+	}
+
+	private void write(ModelGraph graph, int root, BitSet reachableNodes) throws IOException {
+		String rootURI = quote(graph.getURI(root).toString());
+		String rootEClass = quote(eClassName(graph.getEClass(root)));
+		for (int node = reachableNodes.nextClearBit(0); node < graph.resourceSize(); node = reachableNodes.nextClearBit(node + 1)) {
+			String uri = quote(graph.getURI(node).toString());
+			String eClass = quote(eClassName(graph.getEClass(node)));
+			if (format == Format.CSV) {
+				writer.write(rootURI);
+				writer.write(',');
+				writer.write(rootEClass);
+				writer.write(',');
+				writer.write(uri);
+				writer.write(',');
+				writer.write(eClass);
+				writer.write('\n');
+			} else {
+				writer.write("{\"root\": ");
+				writer.write(rootURI);
+				writer.write(", \"rootEClass\": ");
+				writer.write(rootEClass);
+				writer.write(", \"object\": ");
+				writer.write(uri);
+				writer.write(", \"eClass\": ");
+				writer.write(eClass);
+				writer.write("}\n");
+			}
+			recordCount++;
+		}
+	}
+
+	private static String eClassName(EClass eClass) {
+		return eClass != null ? eClass.getName() : "";
+	}
+
+	private String quote(String string) {
+		return format == Format.JSONL ? PhaseMetrics.quote(string) : quoteCsv(string);
+	}
+
+	/**
+	 * Returns <code>string</code> as a CSV field, quoted only if needed
+	 */
+	static String quoteCsv(String string) {
+		if (string.indexOf(',') < 0 && string.indexOf('"') < 0 && string.indexOf('\n') < 0) {
+			return string;
+		}
+		return '"' + string.replace("\"", "\"\"") + '"';
+	}
+
+	private void checkError() throws IOException {
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Waits until all the queued records are written, and closes the file
+	 *
+	 * @throws IOException
+	 *             If the records could not be written
+	 */
+	@Override
+	public void close() throws IOException {
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				// Keep waiting for the pending batches
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			writer.close();
+		}
+		checkError();
+	}
+
+	/**
+	 * @return The number of records written so far
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+}